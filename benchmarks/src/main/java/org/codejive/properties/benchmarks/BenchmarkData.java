@@ -0,0 +1,117 @@
+package org.codejive.properties.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Generates properties files that look like real configuration files: sections with header
+ * comments, comments for some of the properties, blank lines, the different kinds of separators,
+ * and values that contain escapes, Unicode characters and continuation lines. The same number of
+ * keys always results in the same file.
+ */
+public class BenchmarkData {
+    private static final String[] MODULES = {"server", "database", "cache", "security", "ui"};
+
+    private BenchmarkData() {}
+
+    /**
+     * Returns the key of the property with the given index.
+     *
+     * @param i the index of the property
+     * @return a key
+     */
+    public static String key(int i) {
+        return "app." + MODULES[i % MODULES.length] + ".group" + (i / 100) + ".setting" + i;
+    }
+
+    /**
+     * Returns the text of a properties file with the given number of keys.
+     *
+     * @param keys the number of keys
+     * @return the contents of a properties file
+     */
+    public static String generate(int keys) {
+        Random rnd = new Random(42);
+        StringBuilder sb = new StringBuilder(keys * 64);
+        sb.append("# Generated configuration\n# with a header comment\n\n");
+        for (int i = 0; i < keys; i++) {
+            if (i % 100 == 0) {
+                sb.append("\n########################################\n");
+                sb.append("# Section ").append(i / 100).append('\n');
+                sb.append("########################################\n\n");
+            }
+            int kind = rnd.nextInt(20);
+            if (kind == 0) {
+                sb.append("! An old style comment for setting ").append(i).append('\n');
+            } else if (kind < 4) {
+                sb.append("# The value of setting ").append(i).append('\n');
+            }
+            sb.append(key(i));
+            switch (rnd.nextInt(4)) {
+                case 0:
+                    sb.append('=');
+                    break;
+                case 1:
+                    sb.append(" = ");
+                    break;
+                case 2:
+                    sb.append(": ");
+                    break;
+                default:
+                    sb.append(' ');
+                    break;
+            }
+            switch (kind) {
+                case 4:
+                case 5:
+                    sb.append("https://example.com/").append(i).append("?a=b\\&c=d");
+                    break;
+                case 6:
+                    sb.append("C:\\\\Program Files\\\\App\\\\").append(i);
+                    break;
+                case 7:
+                    sb.append("caf\\u00e9 cr\u00e8me \u00fcber ").append(i);
+                    break;
+                case 8:
+                    sb.append("first,\\\n    second,\\\n    third ").append(i);
+                    break;
+                case 9:
+                    // empty value
+                    break;
+                case 10:
+                case 11:
+                    sb.append(rnd.nextBoolean());
+                    break;
+                default:
+                    sb.append(rnd.nextInt(100000));
+                    break;
+            }
+            sb.append('\n');
+            if (rnd.nextInt(10) == 0) {
+                sb.append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the indices of all keys in a random order, for benchmarks that access keys
+     * randomly without having to generate random numbers while they are being measured.
+     *
+     * @param keys the number of keys
+     * @return an array of indices
+     */
+    public static int[] shuffled(int keys) {
+        Random rnd = new Random(42);
+        int[] idx = new int[keys];
+        for (int i = 0; i < keys; i++) {
+            idx[i] = i;
+        }
+        for (int i = keys - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1);
+            int t = idx[i];
+            idx[i] = idx[j];
+            idx[j] = t;
+        }
+        return idx;
+    }
+}
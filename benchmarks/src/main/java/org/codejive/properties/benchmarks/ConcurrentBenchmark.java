@@ -0,0 +1,80 @@
+package org.codejive.properties.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.codejive.properties.ConcurrentProperties;
+import org.codejive.properties.Properties;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures reading values from multiple threads while another thread occasionally changes a value,
+ * comparing <code>ConcurrentProperties</code> to a <code>Properties</code> guarded by a lock.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConcurrentBenchmark {
+    @Param({"10000"})
+    public int keys;
+
+    private String[] keyNames;
+    private ConcurrentProperties concurrent;
+    private Map<String, String> locked;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        String text = BenchmarkData.generate(keys);
+        concurrent = new ConcurrentProperties(Properties.loadProperties(new StringReader(text)));
+        locked = Collections.synchronizedMap(Properties.loadProperties(new StringReader(text)));
+        int[] order = BenchmarkData.shuffled(keys);
+        keyNames = new String[keys];
+        for (int i = 0; i < keys; i++) {
+            keyNames[i] = BenchmarkData.key(order[i]);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    private String nextKey(Cursor c) {
+        String key = keyNames[c.next];
+        c.next = (c.next + 1) % keyNames.length;
+        return key;
+    }
+
+    @Benchmark
+    @Group("concurrent")
+    @GroupThreads(4)
+    public String concurrentGet(Cursor c) {
+        return concurrent.get(nextKey(c));
+    }
+
+    @Benchmark
+    @Group("concurrent")
+    @GroupThreads(1)
+    public String concurrentPut(Cursor c) {
+        return concurrent.put(nextKey(c), "changed");
+    }
+
+    @Benchmark
+    @Group("locked")
+    @GroupThreads(4)
+    public String lockedGet(Cursor c) {
+        return locked.get(nextKey(c));
+    }
+
+    @Benchmark
+    @Group("locked")
+    @GroupThreads(1)
+    public String lockedPut(Cursor c) {
+        return locked.put(nextKey(c), "changed");
+    }
+}
@@ -0,0 +1,89 @@
+package org.codejive.properties.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.codejive.properties.Properties;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures operations that insert and remove tokens in the middle of the token list: adding
+ * comments to, and removing, the first 5000 properties of a file, and applying a set of 5000
+ * changes spread over the whole file either one by one or as a single batch.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EditBenchmark {
+    private static final int EDITS = 5000;
+
+    @Param({"10000", "100000"})
+    public int keys;
+
+    private String text;
+    private Properties props;
+    private Map<String, String> puts;
+    private List<String> removes;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < keys; i++) {
+            sb.append("some.key.").append(i).append(" = some value ").append(i).append('\n');
+        }
+        text = sb.toString();
+        puts = new LinkedHashMap<>();
+        removes = new ArrayList<>();
+        int step = keys / EDITS;
+        for (int i = 0; i < EDITS; i++) {
+            if (i % 10 == 0) {
+                removes.add("some.key." + (i * step));
+            } else if (i % 10 == 1) {
+                puts.put("new.key." + i, "new value " + i);
+            } else {
+                puts.put("some.key." + (i * step), "new value " + i);
+            }
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void load() throws IOException {
+        props = Properties.loadProperties(new StringReader(text));
+    }
+
+    @Benchmark
+    public Properties setCommentNearTop() {
+        for (int i = 0; i < EDITS; i++) {
+            props.setComment("some.key." + i, "# A comment for key " + i, "# and a second line");
+        }
+        return props;
+    }
+
+    @Benchmark
+    public Properties removeNearTop() {
+        for (int i = 0; i < EDITS; i++) {
+            props.remove("some.key." + i);
+        }
+        return props;
+    }
+
+    @Benchmark
+    public Properties applySeparately() {
+        removes.forEach(props::remove);
+        puts.forEach(props::put);
+        return props;
+    }
+
+    @Benchmark
+    public Properties applyBatch() {
+        props.applyBatch(puts, removes);
+        return props;
+    }
+}
@@ -0,0 +1,58 @@
+package org.codejive.properties.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.codejive.properties.Properties;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures reading from a chain of defaults like global, region, cluster, service and instance
+ * settings, where each layer overrides a smaller part of the keys of the layer below it. Most keys
+ * are only found in the bottom layer, which is the worst case for lookups.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LayeredBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int keys;
+
+    private static final int LAYERS = 5;
+
+    private String[] keyNames;
+    private int next;
+    private Properties props;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        props = Properties.loadProperties(new StringReader(BenchmarkData.generate(keys)));
+        for (int l = 1, step = 10; l < LAYERS; l++, step *= 4) {
+            props = new Properties(props);
+            for (int i = 0; i < keys; i += step) {
+                props.put(BenchmarkData.key(i), "layer " + l);
+            }
+        }
+        int[] order = BenchmarkData.shuffled(keys);
+        keyNames = new String[keys];
+        for (int i = 0; i < keys; i++) {
+            keyNames[i] = BenchmarkData.key(order[i]);
+        }
+    }
+
+    @Benchmark
+    public String getProperty() {
+        String key = keyNames[next];
+        next = (next + 1) % keyNames.length;
+        return props.getProperty(key);
+    }
+
+    @Benchmark
+    public Set<String> stringPropertyNames() {
+        return props.stringPropertyNames();
+    }
+}
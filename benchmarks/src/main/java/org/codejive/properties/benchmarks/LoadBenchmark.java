@@ -0,0 +1,91 @@
+package org.codejive.properties.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.codejive.properties.LoadOptions;
+import org.codejive.properties.Properties;
+import org.openjdk.jmh.annotations.*;
+
+/** Measures parsing a file with a mix of comments, empty lines, escapes and continuation lines. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoadBenchmark {
+    @Param({"10000", "100000"})
+    public int keys;
+
+    private String text;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < keys; i++) {
+            if (i % 10 == 0) {
+                sb.append('\n').append("# Section ").append(i / 10).append('\n');
+                sb.append("# with a comment that spans two lines\n");
+            }
+            sb.append("service.component").append(i % 17).append(".key").append(i);
+            if (i % 5 == 0) {
+                sb.append(" = a value with \\t escapes and \\u00e9 unicode ").append(i);
+            } else if (i % 7 == 0) {
+                sb.append(": a value that \\\n    continues on the next line ").append(i);
+            } else {
+                sb.append('=').append("value-").append(i);
+            }
+            sb.append('\n');
+        }
+        text = sb.toString();
+        file = Files.createTempFile("bench", ".properties");
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public Properties load() throws IOException {
+        return Properties.loadProperties(new StringReader(text));
+    }
+
+    @Benchmark
+    public Properties loadFile() throws IOException {
+        return Properties.loadProperties(file);
+    }
+
+    @Benchmark
+    public Properties loadFileMapped() throws IOException {
+        return Properties.loadProperties(file, LoadOptions.defaults().withMemoryMapping(true));
+    }
+
+    @Benchmark
+    public Properties loadFileMappedLazy() throws IOException {
+        return Properties.loadProperties(
+                file, LoadOptions.defaults().withMemoryMapping(true).withLazyDecoding(true));
+    }
+
+    // Loading a file only to read a few of its values, which is what most applications do
+    @Benchmark
+    public String readFewMapped() throws IOException {
+        return readFew(LoadOptions.defaults().withMemoryMapping(true));
+    }
+
+    @Benchmark
+    public String readFewMappedLazy() throws IOException {
+        return readFew(LoadOptions.defaults().withMemoryMapping(true).withLazyDecoding(true));
+    }
+
+    private String readFew(LoadOptions options) throws IOException {
+        Properties p = Properties.loadProperties(file, options);
+        return p.get("service.component1.key1") + p.get("service.component5.key5");
+    }
+}
@@ -0,0 +1,59 @@
+package org.codejive.properties.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+import org.codejive.properties.Properties;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the operations that need to find the tokens belonging to a key: replacing the value of
+ * every existing key and looking up every raw value. The cost per key should stay the same
+ * regardless of the number of keys in the file.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LookupBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int keys;
+
+    private String text;
+    private Properties props;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < keys; i++) {
+            if (i % 10 == 0) {
+                sb.append("# Comment for key ").append(i).append('\n');
+            }
+            sb.append("some.key.").append(i).append(" = some value ").append(i).append('\n');
+        }
+        text = sb.toString();
+    }
+
+    @Setup(Level.Invocation)
+    public void load() throws IOException {
+        props = Properties.loadProperties(new StringReader(text));
+    }
+
+    @Benchmark
+    public Properties putExisting() {
+        for (int i = 0; i < keys; i++) {
+            props.put("some.key." + i, "new value " + i);
+        }
+        return props;
+    }
+
+    @Benchmark
+    public void getRaw(Blackhole bh) {
+        for (int i = 0; i < keys; i++) {
+            bh.consume(props.getRaw("some.key." + i));
+        }
+    }
+}
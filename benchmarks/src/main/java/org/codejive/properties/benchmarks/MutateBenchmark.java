@@ -0,0 +1,136 @@
+package org.codejive.properties.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+import org.codejive.properties.EditSession;
+import org.codejive.properties.FrozenProperties;
+import org.codejive.properties.Properties;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures single operations on random keys of a loaded file, side by side with <code>
+ * java.util.Properties</code> as a baseline where it has an equivalent operation. All operations
+ * leave the number of properties unchanged, so the file keeps its size during the measurements.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MutateBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int keys;
+
+    private String[] keyNames;
+    private int next;
+    private Properties props;
+    private FrozenProperties frozen;
+    private java.util.Properties juProps;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        String text = BenchmarkData.generate(keys);
+        props = Properties.loadProperties(new StringReader(text));
+        frozen = props.freeze();
+        juProps = new java.util.Properties();
+        juProps.load(new StringReader(text));
+        int[] order = BenchmarkData.shuffled(keys);
+        keyNames = new String[keys];
+        for (int i = 0; i < keys; i++) {
+            keyNames[i] = BenchmarkData.key(order[i]);
+        }
+    }
+
+    private String nextKey() {
+        String key = keyNames[next];
+        next = (next + 1) % keyNames.length;
+        return key;
+    }
+
+    @Benchmark
+    public String get() {
+        return props.get(nextKey());
+    }
+
+    @Benchmark
+    public String getFrozen() {
+        return frozen.get(nextKey());
+    }
+
+    @Benchmark
+    public String getBaseline() {
+        return juProps.getProperty(nextKey());
+    }
+
+    @Benchmark
+    public String getRaw() {
+        return props.getRaw(nextKey());
+    }
+
+    // The 20 keys of a section, found using the prefix index
+    @Benchmark
+    public int keysWithPrefix() {
+        return props.keysWithPrefix(nextPrefix()).size();
+    }
+
+    // The same keys, found by looking at all of them
+    @Benchmark
+    public int keysWithPrefixScan() {
+        String prefix = nextPrefix();
+        int count = 0;
+        for (String key : props.keySet()) {
+            if (key.startsWith(prefix)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private String nextPrefix() {
+        String key = nextKey();
+        return key.substring(0, key.lastIndexOf('.') + 1);
+    }
+
+    @Benchmark
+    public String put() {
+        return props.put(nextKey(), "a new value");
+    }
+
+    @Benchmark
+    public Object putBaseline() {
+        return juProps.put(nextKey(), "a new value");
+    }
+
+    // Removing a property and adding it again, which puts it at the end of the file
+    @Benchmark
+    public String removeAndPut() {
+        String key = nextKey();
+        String value = props.remove(key);
+        return props.put(key, value);
+    }
+
+    // Changing a value in an edit session that gets rolled back
+    @Benchmark
+    public String putAndRollback() {
+        EditSession edit = props.beginEdit();
+        String old = props.put(nextKey(), "a new value");
+        edit.rollback();
+        return old;
+    }
+
+    // The same, but making a copy of all properties to be able to undo the change
+    @Benchmark
+    public String putAndRollbackCopy() {
+        Properties copy = props.escaped();
+        String old = props.put(nextKey(), "a new value");
+        props = copy;
+        return old;
+    }
+
+    @Benchmark
+    public Object setComment() {
+        return props.setComment(nextKey(), "# A new comment", "# spanning two lines");
+    }
+}
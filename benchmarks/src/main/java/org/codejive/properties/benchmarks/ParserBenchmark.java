@@ -0,0 +1,36 @@
+package org.codejive.properties.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+import org.codejive.properties.PropertiesParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Measures just the tokenizing of a file by <code>PropertiesParser</code>. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int keys;
+
+    private String text;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        text = BenchmarkData.generate(keys);
+    }
+
+    @Benchmark
+    public void nextToken(Blackhole bh) throws IOException {
+        PropertiesParser p = new PropertiesParser(new StringReader(text));
+        PropertiesParser.Token token;
+        while ((token = p.nextToken()) != null) {
+            bh.consume(token);
+        }
+    }
+}
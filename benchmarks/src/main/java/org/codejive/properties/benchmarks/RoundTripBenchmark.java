@@ -0,0 +1,82 @@
+package org.codejive.properties.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+import org.codejive.properties.Properties;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures loading and storing complete files, side by side with <code>java.util.Properties
+ * </code> as a baseline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoundTripBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int keys;
+
+    private String text;
+    private Properties props;
+    private java.util.Properties juProps;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        text = BenchmarkData.generate(keys);
+        props = Properties.loadProperties(new StringReader(text));
+        juProps = new java.util.Properties();
+        juProps.load(new StringReader(text));
+    }
+
+    @Benchmark
+    public Properties load() throws IOException {
+        return Properties.loadProperties(new StringReader(text));
+    }
+
+    @Benchmark
+    public java.util.Properties loadBaseline() throws IOException {
+        java.util.Properties p = new java.util.Properties();
+        p.load(new StringReader(text));
+        return p;
+    }
+
+    @Benchmark
+    public String store() throws IOException {
+        StringWriter sw = new StringWriter(text.length());
+        props.store(sw);
+        return sw.toString();
+    }
+
+    @Benchmark
+    public String storeBaseline() throws IOException {
+        StringWriter sw = new StringWriter(text.length());
+        juProps.store(sw, null);
+        return sw.toString();
+    }
+
+    @Benchmark
+    public String loadAndStore() throws IOException {
+        StringWriter sw = new StringWriter(text.length());
+        Properties.loadProperties(new StringReader(text)).store(sw);
+        return sw.toString();
+    }
+
+    @Benchmark
+    public String loadAndStoreBaseline() throws IOException {
+        java.util.Properties p = new java.util.Properties();
+        p.load(new StringReader(text));
+        StringWriter sw = new StringWriter(text.length());
+        p.store(sw, null);
+        return sw.toString();
+    }
+
+    @Benchmark
+    public Properties escaped() {
+        return props.escaped();
+    }
+}
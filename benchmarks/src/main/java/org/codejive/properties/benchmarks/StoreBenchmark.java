@@ -0,0 +1,86 @@
+package org.codejive.properties.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.codejive.properties.LoadOptions;
+import org.codejive.properties.Properties;
+import org.openjdk.jmh.annotations.*;
+
+/** Measures storing a large file of which only a few values were changed. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StoreBenchmark {
+    @Param({"10000", "100000"})
+    public int keys;
+
+    private Path file;
+    private Path out;
+    private Path patched;
+    private Properties props;
+    private Properties lazyProps;
+    private Properties patchedProps;
+    private int count;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < keys; i++) {
+            if (i % 10 == 0) {
+                sb.append("# Comment for key").append(i).append('\n');
+            }
+            sb.append("key").append(i).append(" = value-").append(i).append('\n');
+        }
+        file = Files.createTempFile("bench", ".properties");
+        out = Files.createTempFile("bench", ".properties");
+        patched = Files.createTempFile("bench", ".properties");
+        Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+        Files.write(patched, sb.toString().getBytes(StandardCharsets.UTF_8));
+        patchedProps =
+                Properties.loadProperties(
+                        patched,
+                        LoadOptions.defaults().withMemoryMapping(true).withLazyDecoding(true));
+        props = Properties.loadProperties(file);
+        lazyProps =
+                Properties.loadProperties(
+                        file,
+                        LoadOptions.defaults().withMemoryMapping(true).withLazyDecoding(true));
+        for (Properties p : new Properties[] {props, lazyProps}) {
+            p.put("key1", "changed");
+            p.put("key" + keys / 2, "changed");
+            p.put("key" + (keys - 1), "changed");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(out);
+        Files.deleteIfExists(patched);
+    }
+
+    @Benchmark
+    public void store() throws IOException {
+        props.store(out);
+    }
+
+    @Benchmark
+    public void storeMappedLazy() throws IOException {
+        lazyProps.store(out);
+    }
+
+    // Changes a value near the start and one at the end before storing
+    @Benchmark
+    public void storeIncremental() throws IOException {
+        count++;
+        patchedProps.put("key1", (count % 2 == 0 ? "value-1" : "VALUE-1"));
+        patchedProps.put("key" + (keys - 1), "changed-" + count);
+        patchedProps.storeIncremental(patched);
+    }
+}
@@ -0,0 +1,360 @@
+package org.codejive.properties;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A thread-safe variant of <code>Properties</code> for properties that are read far more often than
+ * they are changed. Reading values never blocks: lookups use an immutable snapshot of all keys and
+ * values, which gets replaced by a new one after every change. All other operations, like changing
+ * values, working with comments and loading or storing, are serialized. Those still keep the exact
+ * formatting of the input, just like <code>Properties</code> does.
+ *
+ * <p>Every change that affects the values creates a new snapshot, which takes time proportional to
+ * the number of properties. Use <code>putAll()</code> to make many changes at once. The values
+ * returned by <code>entrySet()</code>, <code>keySet()</code> and <code>values()</code> reflect the
+ * snapshot at the time they were called and can't be modified.
+ */
+public class ConcurrentProperties extends AbstractMap<String, String> {
+    // Guarded by `this`
+    private final Properties props;
+    private volatile Map<String, PropertiesParser.Token> snapshot;
+
+    public ConcurrentProperties() {
+        this(new Properties());
+    }
+
+    /**
+     * Creates a new object that takes over the given properties. The given object should not be
+     * used directly anymore afterwards. Its defaults, if any, are used by <code>getProperty()
+     * </code> and should not be changed either.
+     *
+     * @param properties a <code>Properties</code> object
+     */
+    public ConcurrentProperties(Properties properties) {
+        props = properties;
+        publish();
+    }
+
+    // Must be called after every change to the values
+    private void publish() {
+        snapshot = Collections.unmodifiableMap(new LinkedHashMap<>(props.valueTokens()));
+    }
+
+    /**
+     * Searches for the property with the specified key in this property list. If the key is not
+     * found in this property list, the default property list, and its defaults, recursively, are
+     * then checked. The method returns null if the property is not found.
+     *
+     * @param key the key to look up.
+     * @return the value in this property list with the specified key value or <code>null</code>.
+     */
+    public String getProperty(String key) {
+        return getProperty(key, null);
+    }
+
+    /**
+     * Searches for the property with the specified key in this property list. If the key is not
+     * found in this property list, the default property list, and its defaults, recursively, are
+     * then checked. The method returns the default value argument if the property is not found.
+     *
+     * @param key the key to look up.
+     * @param defaultValue the value to return if no mapping was found for the key.
+     * @return the value in this property list with the specified key value or the value of <code>
+     *     defaultValue</code>.
+     */
+    public String getProperty(String key, String defaultValue) {
+        PropertiesParser.Token token = snapshot.get(key);
+        if (token != null) {
+            return token.getText();
+        }
+        Properties defaults = props.defaults();
+        return defaults != null ? defaults.lookup(key, defaultValue) : defaultValue;
+    }
+
+    @Override
+    public String get(Object key) {
+        PropertiesParser.Token token = snapshot.get(key);
+        return token != null ? token.getText() : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return snapshot.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return snapshot.size();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return snapshot.keySet();
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        Map<String, PropertiesParser.Token> snap = snapshot;
+        return new AbstractSet<Entry<String, String>>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                Iterator<Entry<String, PropertiesParser.Token>> iter = snap.entrySet().iterator();
+                return new Iterator<Entry<String, String>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iter.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, String> next() {
+                        Entry<String, PropertiesParser.Token> e = iter.next();
+                        return new SimpleImmutableEntry<>(e.getKey(), e.getValue().getText());
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return snap.size();
+            }
+        };
+    }
+
+    /**
+     * Works like <code>get()</code> but returns the raw value associated with the given raw key.
+     * This means that the value won't be unescaped before being returned.
+     *
+     * @param rawKey The key, in raw format, to look up
+     * @return A raw value or <code>null</code> if the key wasn't found
+     */
+    public synchronized String getRaw(String rawKey) {
+        return props.getRaw(rawKey);
+    }
+
+    @Override
+    public synchronized String put(String key, String value) {
+        String old = props.put(key, value);
+        publish();
+        return old;
+    }
+
+    /**
+     * Associates the specified value with the specified key in this properties table. If the
+     * properties previously contained a mapping for the key, the old value is replaced. If any
+     * comment lines are supplied they will be prepended to the property.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @param comment comment lines to be associated with the specified key
+     * @return the previous value associated with key, or null if there was no mapping for key
+     */
+    public synchronized String putCommented(String key, String value, String... comment) {
+        String old = props.putCommented(key, value, comment);
+        publish();
+        return old;
+    }
+
+    /**
+     * Same as <code>putCommented()</code>.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @param comment comment lines to be associated with the specified key
+     * @return the previous value associated with key, or null if there was no mapping for key
+     */
+    public String setProperty(String key, String value, String... comment) {
+        return putCommented(key, value, comment);
+    }
+
+    /**
+     * Works like <code>put()</code> but uses raw values for keys and values. This means these keys
+     * and values will not be escaped before being stored.
+     *
+     * @param rawKey key with which the specified value is to be associated
+     * @param rawValue value to be associated with the specified key
+     * @return the previous value associated with key, or null if there was no mapping for key.
+     */
+    public synchronized String putRaw(String rawKey, String rawValue) {
+        String old = props.putRaw(rawKey, rawValue);
+        publish();
+        return old;
+    }
+
+    @Override
+    public synchronized void putAll(Map<? extends String, ? extends String> m) {
+        props.putAll(m);
+        publish();
+    }
+
+    @Override
+    public synchronized String remove(Object key) {
+        String old = props.remove(key);
+        publish();
+        return old;
+    }
+
+    @Override
+    public synchronized void clear() {
+        props.clear();
+        publish();
+    }
+
+    /**
+     * Gather all the comments directly before the given key and return them as a list.
+     *
+     * @param key the property to look up
+     * @return a list of comment lines
+     * @see Properties#getComment(String)
+     */
+    public synchronized List<String> getComment(String key) {
+        return props.getComment(key);
+    }
+
+    /**
+     * Replaces the comments directly before the given key with the given comments.
+     *
+     * @param key the property to look up
+     * @param comments the new comment lines
+     * @return the previous comment lines
+     * @see Properties#setComment(String, String...)
+     */
+    public synchronized List<String> setComment(String key, String... comments) {
+        return props.setComment(key, comments);
+    }
+
+    /**
+     * Replaces the comments directly before the given key with the given comments.
+     *
+     * @param key the property to look up
+     * @param comments the new comment lines
+     * @return the previous comment lines
+     * @see Properties#setComment(String, List)
+     */
+    public synchronized List<String> setComment(String key, List<String> comments) {
+        return props.setComment(key, comments);
+    }
+
+    /**
+     * Loads the contents from the given file and stores it in this object.
+     *
+     * @param file a path to the file to load
+     * @throws IOException Thrown when any IO error occurs during loading
+     * @see Properties#load(Path)
+     */
+    public synchronized void load(Path file) throws IOException {
+        try {
+            props.load(file);
+        } finally {
+            publish();
+        }
+    }
+
+    /**
+     * Loads the contents from the given file and stores it in this object.
+     *
+     * @param file a path to the file to load
+     * @param options a <code>LoadOptions</code> object
+     * @throws IOException Thrown when any IO error occurs during loading
+     * @see Properties#load(Path, LoadOptions)
+     */
+    public synchronized void load(Path file, LoadOptions options) throws IOException {
+        try {
+            props.load(file, options);
+        } finally {
+            publish();
+        }
+    }
+
+    /**
+     * Loads the contents from the input and stores it in this object.
+     *
+     * @param in an <code>InputStream</code> object
+     * @throws IOException Thrown when any IO error occurs during loading
+     * @see Properties#load(InputStream)
+     */
+    public synchronized void load(InputStream in) throws IOException {
+        try {
+            props.load(in);
+        } finally {
+            publish();
+        }
+    }
+
+    /**
+     * Loads the contents from the reader and stores it in this object.
+     *
+     * @param reader a <code>Reader</code> object
+     * @throws IOException Thrown when any IO error occurs during loading
+     * @see Properties#load(Reader)
+     */
+    public synchronized void load(Reader reader) throws IOException {
+        try {
+            props.load(reader);
+        } finally {
+            publish();
+        }
+    }
+
+    /**
+     * Stores the contents of this object to the given file.
+     *
+     * @param file a path to the file to write
+     * @param comment comment lines to be written at the start of the output
+     * @throws IOException Thrown when any IO error occurs during operation
+     * @see Properties#store(Path, String...)
+     */
+    public synchronized void store(Path file, String... comment) throws IOException {
+        props.store(file, comment);
+    }
+
+    /**
+     * Stores the contents of this object to the given file.
+     *
+     * @param file a path to the file to write
+     * @param options a <code>StoreOptions</code> object
+     * @param comment comment lines to be written at the start of the output
+     * @throws IOException Thrown when any IO error occurs during operation
+     * @see Properties#store(Path, StoreOptions, String...)
+     */
+    public synchronized void store(Path file, StoreOptions options, String... comment)
+            throws IOException {
+        props.store(file, options, comment);
+    }
+
+    /**
+     * Stores the contents of this object to the given output stream.
+     *
+     * @param out an <code>OutputStream</code> object
+     * @param comment comment lines to be written at the start of the output
+     * @throws IOException Thrown when any IO error occurs during operation
+     * @see Properties#store(OutputStream, String...)
+     */
+    public synchronized void store(OutputStream out, String... comment) throws IOException {
+        props.store(out, comment);
+    }
+
+    /**
+     * Stores the contents of this object to the given writer.
+     *
+     * @param writer a <code>Writer</code> object
+     * @param comment comment lines to be written at the start of the output
+     * @throws IOException Thrown when any IO error occurs during operation
+     * @see Properties#store(Writer, String...)
+     */
+    public synchronized void store(Writer writer, String... comment) throws IOException {
+        props.store(writer, comment);
+    }
+}
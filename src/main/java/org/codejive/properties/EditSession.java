@@ -0,0 +1,87 @@
+package org.codejive.properties;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An edit session for a <code>Properties</code> object, as started by <code>
+ * Properties.beginEdit()</code>. Changes are made to the properties directly, the session only
+ * keeps track of how to undo them. It ends when either <code>commit()</code> or <code>rollback()
+ * </code> gets called. When used in a try-with-resources statement the session gets rolled back
+ * automatically unless it was committed:
+ *
+ * <pre>
+ * try (EditSession edit = props.beginEdit()) {
+ *     props.put("key", "value");
+ *     validate(props);
+ *     edit.commit();
+ * }
+ * </pre>
+ */
+public class EditSession implements AutoCloseable {
+    private final Properties props;
+    // Actions that undo the changes made during this session, in the order they were made
+    final List<Runnable> journal;
+    // The state of the properties that is easier to save than to journal
+    final boolean duplicateKeys;
+    boolean reindex;
+    // The keys whose values or comments changed, only tracked when there are change listeners
+    final Set<String> keys;
+    final Set<String> commentKeys;
+    private boolean active;
+
+    EditSession(Properties props, boolean duplicateKeys) {
+        this.props = props;
+        this.duplicateKeys = duplicateKeys;
+        journal = new ArrayList<>();
+        keys = new LinkedHashSet<>();
+        commentKeys = new LinkedHashSet<>();
+        active = true;
+    }
+
+    /**
+     * Returns if the session is still in progress.
+     *
+     * @return <code>true</code> if neither <code>commit()</code> nor <code>rollback()</code> has
+     *     been called yet
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Ends the session, keeping all the changes that were made during it.
+     *
+     * @throws IllegalStateException if the session has already ended
+     */
+    public void commit() {
+        end(false);
+    }
+
+    /**
+     * Ends the session, undoing all the changes that were made during it.
+     *
+     * @throws IllegalStateException if the session has already ended
+     */
+    public void rollback() {
+        end(true);
+    }
+
+    /** Rolls back the session if it is still in progress. */
+    @Override
+    public void close() {
+        if (active) {
+            rollback();
+        }
+    }
+
+    private void end(boolean rollback) {
+        if (!active) {
+            throw new IllegalStateException("The edit session has already ended");
+        }
+        active = false;
+        props.endEdit(this, rollback);
+    }
+}
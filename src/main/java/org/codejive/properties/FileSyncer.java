@@ -0,0 +1,94 @@
+package org.codejive.properties;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Forces files to disk, either right away or after a delay. All requests to sync the same file that
+ * are made during a delay are handled by a single sync at the end of it. Requests can ask for just
+ * the directory entry to be synced, for files whose contents were already forced to disk.
+ */
+class FileSyncer {
+    private static final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(
+                    r -> {
+                        Thread t = new Thread(r, "properties-file-syncer");
+                        t.setDaemon(true);
+                        return t;
+                    });
+
+    // The files that have a sync scheduled, mapped to whether their contents need forcing too
+    private static final Map<Path, Boolean> pending = new ConcurrentHashMap<>();
+    // Errors that occurred during delayed syncs, to be reported by the next request
+    private static final Map<Path, IOException> failures = new ConcurrentHashMap<>();
+
+    private FileSyncer() {}
+
+    /**
+     * Forces the directory containing the given file to disk and, if requested, the file itself.
+     *
+     * @param file the file to sync
+     * @param contents whether the contents of the file must be forced as well, <code>false</code>
+     *     when they were already forced by the caller
+     * @param delay how long the sync may be delayed
+     * @throws IOException Thrown when the sync fails or when a previous delayed sync of the same
+     *     file failed
+     */
+    static void sync(Path file, boolean contents, Duration delay) throws IOException {
+        Path key = file.toAbsolutePath().normalize();
+        IOException failure = failures.remove(key);
+        if (failure != null) {
+            throw failure;
+        }
+        if (delay.isZero()) {
+            syncNow(key, contents);
+        } else {
+            boolean[] first = new boolean[1];
+            pending.compute(
+                    key,
+                    (k, v) -> {
+                        first[0] = v == null;
+                        return first[0] ? contents : v || contents;
+                    });
+            if (first[0]) {
+                scheduler.schedule(() -> syncDelayed(key), delay.toNanos(), TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private static void syncDelayed(Path file) {
+        // Any sync requested from now on needs a new sync
+        Boolean contents = pending.remove(file);
+        try {
+            syncNow(file, contents);
+        } catch (IOException ex) {
+            failures.put(file, ex);
+        }
+    }
+
+    private static void syncNow(Path file, boolean contents) throws IOException {
+        if (contents) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                channel.force(true);
+            }
+        }
+        Path dir = file.getParent();
+        if (dir != null) {
+            // Makes sure the file's directory entry is on disk as well. Not all
+            // systems allow directories to be opened, so errors are ignored
+            try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+                channel.force(true);
+            } catch (IOException ex) {
+                // Ignore
+            }
+        }
+    }
+}
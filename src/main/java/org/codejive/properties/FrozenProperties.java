@@ -0,0 +1,283 @@
+package org.codejive.properties;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable snapshot of a <code>Properties</code> object and all its defaults, meant for
+ * properties that are only read after they have been loaded. Lookups go through a single compact
+ * hash table that already contains the values of all the defaults, so <code>getProperty()</code>
+ * never has to look at more than one table. The formatting and comments are not available for
+ * reading, but they are kept so <code>thaw()</code> can turn the snapshot back into a <code>
+ * Properties</code> object that can be changed and stored again. They are kept as the stored text
+ * of each level, which is the most compact form and which <code>thaw()</code> parses again.
+ *
+ * <p>Just like for <code>Properties</code> the <code>Map</code> methods only see the properties
+ * themselves, while <code>getProperty()</code> and <code>stringPropertyNames()</code> also see the
+ * ones from the defaults. Use <code>Properties.freeze()</code> to create one.
+ */
+public final class FrozenProperties extends AbstractMap<String, String> {
+    // The keys and values of the properties followed by those only found in the defaults
+    private final String[] keys;
+    private final String[] values;
+    // The number of entries at the start of `keys` and `values` that are the properties themselves
+    private final int size;
+    // Open addressing hash table with linear probing, each slot holds an index into `keys` plus
+    // one, or zero when the slot is empty
+    private final int[] slots;
+    // The original text of the properties followed by that of each of its defaults
+    private final String[] sources;
+
+    FrozenProperties(Properties props) {
+        List<Properties> levels = new ArrayList<>();
+        int total = 0;
+        for (Properties p = props; p != null; p = p.defaults()) {
+            levels.add(p);
+            total += p.size();
+        }
+        String[] ks = new String[total];
+        String[] vs = new String[total];
+        int[] table = new int[tableSize(total)];
+        sources = new String[levels.size()];
+        // Equal strings are shared, values like "true" or "8080" tend to be repeated a lot
+        Map<String, String> strings = new HashMap<>();
+        int count = 0;
+        for (int i = 0; i < levels.size(); i++) {
+            Properties level = levels.get(i);
+            for (Entry<String, PropertiesParser.Token> e : level.valueTokens().entrySet()) {
+                int slot = slot(table, ks, e.getKey());
+                if (table[slot] == 0) {
+                    ks[count] = intern(strings, e.getKey());
+                    vs[count] = intern(strings, e.getValue().getText());
+                    table[slot] = ++count;
+                }
+            }
+            sources[i] = text(level);
+        }
+        size = props.size();
+        keys = count < total ? Arrays.copyOf(ks, count) : ks;
+        values = count < total ? Arrays.copyOf(vs, count) : vs;
+        slots = count < total ? rehash(keys) : table;
+    }
+
+    private static int[] rehash(String[] keys) {
+        int[] table = new int[tableSize(keys.length)];
+        for (int i = 0; i < keys.length; i++) {
+            table[slot(table, keys, keys[i])] = i + 1;
+        }
+        return table;
+    }
+
+    private static int tableSize(int entries) {
+        // Keeps the table at most half full
+        int n = 2;
+        while (n < entries * 2) {
+            n <<= 1;
+        }
+        return n;
+    }
+
+    private static String intern(Map<String, String> strings, String s) {
+        String existing = strings.putIfAbsent(s, s);
+        return existing != null ? existing : s;
+    }
+
+    private static String text(Properties props) {
+        StringWriter sw = new StringWriter();
+        try {
+            props.store(sw);
+        } catch (IOException e) {
+            // Can't happen when writing to a StringWriter
+            throw new UncheckedIOException(e);
+        }
+        return sw.toString();
+    }
+
+    // Returns the slot holding the key or the empty slot where it should go
+    private static int slot(int[] slots, String[] keys, Object key) {
+        int h = key.hashCode();
+        int mask = slots.length - 1;
+        for (int i = (h ^ (h >>> 16)) & mask; ; i = (i + 1) & mask) {
+            int s = slots[i];
+            if (s == 0) {
+                return i;
+            }
+            String k = keys[s - 1];
+            if (k == key || (k.hashCode() == h && k.equals(key))) {
+                return i;
+            }
+        }
+    }
+
+    // Returns the index of the key in `keys` or -1 if it wasn't found
+    private int indexOf(Object key) {
+        return key != null ? slots[slot(slots, keys, key)] - 1 : -1;
+    }
+
+    /**
+     * Searches for the property with the specified key in this property list. If the key is not
+     * found in this property list, the default property list, and its defaults, recursively, are
+     * then checked. The method returns null if the property is not found.
+     *
+     * @param key the key to look up.
+     * @return the value in this property list with the specified key value or <code>null</code>.
+     */
+    public String getProperty(String key) {
+        return getProperty(key, null);
+    }
+
+    /**
+     * Searches for the property with the specified key in this property list. If the key is not
+     * found in this property list, the default property list, and its defaults, recursively, are
+     * then checked. The method returns the default value argument if the property is not found.
+     *
+     * @param key the key to look up.
+     * @param defaultValue the value to return if no mapping was found for the key.
+     * @return the value in this property list with the specified key value or the value of <code>
+     *     defaultValue</code>.
+     */
+    public String getProperty(String key, String defaultValue) {
+        int idx = indexOf(key);
+        return idx >= 0 ? values[idx] : defaultValue;
+    }
+
+    /**
+     * Returns an unmodifiable set of keys from this property list, including distinct keys in the
+     * default property list if a key of the same name has not already been found from the main
+     * properties table.
+     *
+     * @return an unmodifiable set of keys in this property list, including the keys in the default
+     *     property list.
+     */
+    public Set<String> stringPropertyNames() {
+        return new Keys(keys.length);
+    }
+
+    /**
+     * Returns a new <code>Properties</code> object, with new objects for each of its defaults, that
+     * has the same contents as the object that was frozen, including all its formatting and
+     * comments. The result can be changed without affecting this object.
+     *
+     * @return a <code>Properties</code> object
+     */
+    public Properties thaw() {
+        Properties result = null;
+        for (int i = sources.length - 1; i >= 0; i--) {
+            result = new Properties(result);
+            try {
+                result.load(new StringReader(sources[i]));
+            } catch (IOException e) {
+                // Can't happen when reading from a StringReader
+                throw new UncheckedIOException(e);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String get(Object key) {
+        int idx = indexOf(key);
+        return idx >= 0 && idx < size ? values[idx] : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        int idx = indexOf(key);
+        return idx >= 0 && idx < size;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return new Keys(size);
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<Entry<String, String>>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new Iter<Entry<String, String>>(size) {
+                    @Override
+                    Entry<String, String> get(int idx) {
+                        return new SimpleImmutableEntry<>(keys[idx], values[idx]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private class Keys extends AbstractSet<String> {
+        private final int count;
+
+        Keys(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return new Iter<String>(count) {
+                @Override
+                String get(int idx) {
+                    return keys[idx];
+                }
+            };
+        }
+
+        @Override
+        public boolean contains(Object key) {
+            int idx = indexOf(key);
+            return idx >= 0 && idx < count;
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+
+    private abstract static class Iter<T> implements Iterator<T> {
+        private final int count;
+        private int next;
+
+        Iter(int count) {
+            this.count = count;
+        }
+
+        abstract T get(int idx);
+
+        @Override
+        public boolean hasNext() {
+            return next < count;
+        }
+
+        @Override
+        public T next() {
+            if (next >= count) {
+                throw new NoSuchElementException();
+            }
+            return get(next++);
+        }
+    }
+}
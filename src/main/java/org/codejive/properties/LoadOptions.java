@@ -0,0 +1,134 @@
+package org.codejive.properties;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Options that determine how <code>Properties.load(Path, LoadOptions)</code> reads a file. Objects
+ * of this class are immutable, each of the <code>with...()</code> methods returns a new object.
+ */
+public class LoadOptions {
+    private final Charset charset;
+    private final boolean memoryMapped;
+    private final boolean lazyDecoding;
+    private final int parallelism;
+
+    private static final LoadOptions DEFAULTS =
+            new LoadOptions(StandardCharsets.UTF_8, false, false, 1);
+
+    private LoadOptions(
+            Charset charset, boolean memoryMapped, boolean lazyDecoding, int parallelism) {
+        this.charset = charset;
+        this.memoryMapped = memoryMapped;
+        this.lazyDecoding = lazyDecoding;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns the default options: files are read as UTF-8 using a <code>Reader</code>, just like
+     * <code>Properties.load(Path)</code> does.
+     *
+     * @return a <code>LoadOptions</code> object
+     */
+    public static LoadOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Returns the character set used to decode the file.
+     *
+     * @return a <code>Charset</code>
+     */
+    public Charset charset() {
+        return charset;
+    }
+
+    /**
+     * Returns a copy of these options that will use the given character set to decode the file.
+     *
+     * @param charset a <code>Charset</code>
+     * @return a <code>LoadOptions</code> object
+     */
+    public LoadOptions withCharset(Charset charset) {
+        return new LoadOptions(
+                Objects.requireNonNull(charset), memoryMapped, lazyDecoding, parallelism);
+    }
+
+    /**
+     * Returns if the file should be memory-mapped.
+     *
+     * @return <code>true</code> if the file should be memory-mapped
+     */
+    public boolean memoryMapped() {
+        return memoryMapped;
+    }
+
+    /**
+     * Returns a copy of these options that determines if the file will be memory-mapped. A
+     * memory-mapped file gets tokenized directly at the byte level and only the contents of the
+     * tokens get decoded, which avoids decoding the entire file to characters first. This is only
+     * supported for the ISO-8859-1, US-ASCII and UTF-8 character sets and for files smaller than
+     * 2GB, in all other cases the file will be read normally.
+     *
+     * @param memoryMapped <code>true</code> if the file should be memory-mapped
+     * @return a <code>LoadOptions</code> object
+     */
+    public LoadOptions withMemoryMapping(boolean memoryMapped) {
+        return new LoadOptions(charset, memoryMapped, lazyDecoding, parallelism);
+    }
+
+    /**
+     * Returns if the contents of a memory-mapped file should be decoded lazily.
+     *
+     * @return <code>true</code> if the contents should be decoded lazily
+     */
+    public boolean lazyDecoding() {
+        return lazyDecoding;
+    }
+
+    /**
+     * Returns a copy of these options that determines if the contents of a memory-mapped file will
+     * be decoded lazily. When set, loading only decodes the keys, all other parts of the file, like
+     * values and comments, only get decoded when they are used for the first time. This makes
+     * loading faster and uses less memory when only some of the properties are ever read. The file
+     * stays mapped as long as the <code>Properties</code> object refers to any of its contents, so
+     * it should not be changed during that time. Because values are decoded later, any invalid
+     * characters in them will result in an <code>UncheckedIOException</code> when they are used.
+     * This option has no effect when the file isn't memory-mapped.
+     *
+     * @param lazyDecoding <code>true</code> if the contents should be decoded lazily
+     * @return a <code>LoadOptions</code> object
+     */
+    public LoadOptions withLazyDecoding(boolean lazyDecoding) {
+        return new LoadOptions(charset, memoryMapped, lazyDecoding, parallelism);
+    }
+
+    /**
+     * Returns the number of threads used to parse a memory-mapped file.
+     *
+     * @return the number of threads
+     */
+    public int parallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Returns a copy of these options that determines how many threads will be used to parse a
+     * memory-mapped file. When more than one, the file gets split into parts at the start of lines
+     * that don't continue the line before them, which are then parsed at the same time and put back
+     * together in order. The result is exactly the same as parsing the file in one go. Small files
+     * are always parsed by a single thread. This option has no effect when the file isn't
+     * memory-mapped.
+     *
+     * @param parallelism the number of threads, at least 1
+     * @return a <code>LoadOptions</code> object
+     * @throws IllegalArgumentException if the number of threads is less than 1
+     */
+    public LoadOptions withParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        return new LoadOptions(charset, memoryMapped, lazyDecoding, parallelism);
+    }
+}
@@ -3,11 +3,24 @@ package org.codejive.properties;
 import static org.codejive.properties.PropertiesParser.unescape;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -21,11 +34,40 @@ import java.util.stream.StreamSupport;
  * representation of the input, meaning that when an input is read and later written out again the
  * output will match the input exactly. Methods exist for obtaining and setting comments on
  * properties.
+ *
+ * <p>Objects of this class are not thread-safe. Several threads can look up properties at the same
+ * time, using <code>getProperty()</code>, <code>get()</code> or <code>stringPropertyNames()</code>
+ * for example, as long as none of them changes the object or any of its defaults.
  */
 public class Properties extends AbstractMap<String, String> {
-    private final LinkedHashMap<String, String> values;
-    private final List<PropertiesParser.Token> tokens;
+    // Maps each key to its VALUE token, the value itself is only created when asked for
+    private final LinkedHashMap<String, PropertiesParser.Token> values;
+    private final TokenList tokens;
     private final Properties defaults;
+    // Maps each key to its KEY token, whose position can be found using `tokens.positionOf()`
+    private final HashMap<String, PropertiesParser.Token> keyIndex;
+    // Set when the tokens contain the same key more than once
+    private boolean duplicateKeys;
+    // The keys that occur more than once, might also contain keys that no longer do
+    private final HashSet<String> duplicates = new HashSet<>();
+    // Incremented on every change to `values`, see `changed()`
+    private long modCount;
+    // The result of `flattened()`
+    private volatile Cached<Properties> flattenedCache;
+    // Maps keys to the layer of the defaults chain they were found in, or to `MISSING`
+    private volatile Cached<ConcurrentHashMap<String, Resolved>> resolvedCache;
+    // All keys in sorted order, only created once a prefix lookup is done and kept up to date
+    // with `values` from then on
+    private TreeSet<String> prefixIndex;
+    // The edit session that is in progress, if any
+    private EditSession edit;
+    // The registered change listeners, null when there are none so that changes don't have to be
+    // tracked at all
+    private List<PropertiesChangeListener> listeners;
+    // The changes that haven't been sent to the listeners yet and the number of batches that are
+    // in progress, the changes are only sent once that number drops to zero
+    private PropertiesChangeEvent event;
+    private int batchDepth;
 
     public Properties() {
         this((Properties) null);
@@ -34,18 +76,16 @@ public class Properties extends AbstractMap<String, String> {
     public Properties(Properties defaults) {
         this.defaults = defaults;
         values = new LinkedHashMap<>();
-        tokens = new ArrayList<>();
+        tokens = new TokenList();
+        keyIndex = new HashMap<>();
     }
 
     private Properties(Properties defaults, List<PropertiesParser.Token> tokens) {
         this.defaults = defaults;
         values = new LinkedHashMap<>();
-        this.tokens = tokens;
-        rawEntrySet()
-                .forEach(
-                        e -> {
-                            values.put(unescape(e.getKey()), unescape(e.getValue()));
-                        });
+        this.tokens = new TokenList();
+        keyIndex = new HashMap<>();
+        load(tokens);
     }
 
     /**
@@ -71,15 +111,73 @@ public class Properties extends AbstractMap<String, String> {
      *     defaultValue</code>.
      */
     public String getProperty(String key, String defaultValue) {
-        if (containsKey(key)) {
-            return get(key);
-        } else if (defaults != null) {
-            return defaults.getProperty(key, defaultValue);
-        } else {
-            return defaultValue;
+        if (defaults == null) {
+            PropertiesParser.Token token = values.get(key);
+            return token != null ? token.getText() : defaultValue;
+        }
+        Resolved r = resolve(key);
+        return r != null ? r.value : defaultValue;
+    }
+
+    private static class Resolved {
+        final Properties owner;
+        final String value;
+
+        Resolved(Properties owner, String value) {
+            this.owner = owner;
+            this.value = value;
         }
     }
 
+    // Remembered for keys that don't exist in any of the layers
+    private static final Resolved MISSING = new Resolved(null, null);
+    // Keys that don't exist are only remembered while the cache is smaller than this, so looking
+    // up lots of different keys that don't exist can't make it grow without limit
+    private static final int MAX_CACHED_MISSES = 1 << 16;
+
+    // Returns the layer of the defaults chain where the key was found, remembering the result
+    // until any of the layers change
+    private Resolved resolve(String key) {
+        if (key == null) {
+            return null;
+        }
+        Cached<ConcurrentHashMap<String, Resolved>> cache = resolvedCache;
+        if (!isCurrent(cache)) {
+            cache = new Cached<>(new ConcurrentHashMap<>(), version());
+            resolvedCache = cache;
+        }
+        Resolved r = cache.value.get(key);
+        if (r == null) {
+            PropertiesParser.Token token = null;
+            Properties p = this;
+            while (p != null && (token = p.values.get(key)) == null) {
+                p = p.defaults;
+            }
+            if (token != null) {
+                r = new Resolved(p, token.getText());
+                cache.value.put(key, r);
+            } else {
+                r = MISSING;
+                if (cache.value.size() < MAX_CACHED_MISSES) {
+                    cache.value.put(key, r);
+                }
+            }
+        }
+        return r != MISSING ? r : null;
+    }
+
+    // Works like `getProperty()` but without using or changing any cached state, which makes it
+    // safe to use from multiple threads at the same time as long as nothing changes the layers
+    String lookup(String key, String defaultValue) {
+        for (Properties p = this; p != null; p = p.defaults) {
+            PropertiesParser.Token token = p.values.get(key);
+            if (token != null) {
+                return token.getText();
+            }
+        }
+        return defaultValue;
+    }
+
     /**
      * Searches for the property with the specified key in this property list. If the key is not
      * found in this property list, the default property list, and its defaults, recursively, are
@@ -90,13 +188,11 @@ public class Properties extends AbstractMap<String, String> {
      * @return the comments for the indicated property or an empty list.
      */
     public List<String> getPropertyComment(String key) {
-        if (containsKey(key)) {
+        if (defaults == null) {
             return getComment(key);
-        } else if (defaults != null) {
-            return defaults.getPropertyComment(key);
-        } else {
-            return Collections.emptyList();
         }
+        Resolved r = resolve(key);
+        return r != null ? r.owner.getComment(key) : Collections.emptyList();
     }
 
     /**
@@ -134,7 +230,7 @@ public class Properties extends AbstractMap<String, String> {
      *     value are strings, including the keys in the default property list.
      */
     public Set<String> stringPropertyNames() {
-        return Collections.unmodifiableSet(flatten().keySet());
+        return Collections.unmodifiableSet(cachedFlattened().keySet());
     }
 
     /**
@@ -144,7 +240,7 @@ public class Properties extends AbstractMap<String, String> {
      */
     public void list(PrintStream out) {
         try {
-            flatten().store(out);
+            cachedFlattened().store(out);
         } catch (IOException e) {
             // Ignore any errors
         }
@@ -157,7 +253,7 @@ public class Properties extends AbstractMap<String, String> {
      */
     public void list(PrintWriter out) {
         try {
-            flatten().store(out);
+            cachedFlattened().store(out);
         } catch (IOException e) {
             // Ignore any errors
         }
@@ -221,6 +317,46 @@ public class Properties extends AbstractMap<String, String> {
         return result;
     }
 
+    // Returns the flattened properties, which are only created again when any of the properties
+    // in the defaults chain have changed since the last time. The result MUST NOT be changed!
+    private Properties cachedFlattened() {
+        Cached<Properties> cache = flattenedCache;
+        if (!isCurrent(cache)) {
+            cache = new Cached<>(flattened(), version());
+            flattenedCache = cache;
+        }
+        return cache.value;
+    }
+
+    // A cached result and the version of the defaults chain it was made for. Caches are never
+    // changed once published, except for the contents of concurrent maps, but get replaced by new
+    // ones, which means that reading from several threads at the same time is safe as long as
+    // none of the properties in the chain are changed.
+    private static final class Cached<T> {
+        final T value;
+        final long version;
+
+        Cached(T value, long version) {
+            this.value = value;
+            this.version = version;
+        }
+    }
+
+    // Returns if the cache was made for the current state of the defaults chain
+    private boolean isCurrent(Cached<?> cache) {
+        return cache != null && cache.version == version();
+    }
+
+    // Must be called on every change to `values`
+    private void changed() {
+        modCount++;
+    }
+
+    // Returns a number that changes whenever the values of this object or its defaults change
+    private long version() {
+        return defaults != null ? modCount + defaults.version() : modCount;
+    }
+
     private void flatten(Properties target) {
         if (defaults != null) {
             defaults.flatten(target);
@@ -228,13 +364,82 @@ public class Properties extends AbstractMap<String, String> {
         target.putAll(this);
     }
 
+    /**
+     * Returns an immutable snapshot of the current properties table and all its defaults. The
+     * snapshot uses less memory and is faster to read from than this object, which makes it a good
+     * fit for properties that won't change anymore after they have been loaded. Use <code>
+     * FrozenProperties.thaw()</code> to get a <code>Properties</code> object that can be changed
+     * again.
+     *
+     * @return a <code>FrozenProperties</code> object
+     */
+    public FrozenProperties freeze() {
+        return new FrozenProperties(this);
+    }
+
+    /**
+     * Returns the keys of this properties table that start with the given prefix, in sorted order.
+     * The result is an unmodifiable view that reflects any later changes to the properties. The
+     * first call creates an index of all the keys, which is kept up to date from then on, so
+     * finding the keys takes time proportional to the length of the prefix and the number of keys
+     * found, not to the size of the table. Keys from the defaults are not included.
+     *
+     * @param prefix the prefix the keys should start with
+     * @return an unmodifiable <code>SortedSet</code> of keys
+     */
+    public SortedSet<String> keysWithPrefix(String prefix) {
+        return Collections.unmodifiableSortedSet(prefixRange(prefix));
+    }
+
+    /**
+     * Returns a view of the properties whose keys start with the given prefix, with the prefix
+     * removed from the keys. The view is live: changes to the properties are visible in the view
+     * and changes made through the view, like <code>put()</code> and <code>remove()</code>, are
+     * made to the properties themselves, keeping all comments and formatting intact. So given a
+     * prefix of "db.pool." a key "size" in the view refers to the key "db.pool.size" in this table.
+     * The keys of the view are in sorted order and are found using the same index as <code>
+     * keysWithPrefix()
+     * </code>.
+     *
+     * @param prefix the prefix the keys should start with
+     * @return a <code>Map</code> object
+     */
+    public Map<String, String> subProperties(String prefix) {
+        return new SubProperties(this, prefix);
+    }
+
+    // Returns a live view of the index with all keys starting with the prefix
+    NavigableSet<String> prefixRange(String prefix) {
+        if (prefixIndex == null) {
+            prefixIndex = new TreeSet<>(values.keySet());
+        }
+        // All keys starting with the prefix sort before the prefix with its last character
+        // incremented, only a prefix that ends in the maximum character value needs care
+        String end = prefix;
+        while (!end.isEmpty() && end.charAt(end.length() - 1) == Character.MAX_VALUE) {
+            end = end.substring(0, end.length() - 1);
+        }
+        if (end.isEmpty()) {
+            return prefixIndex.tailSet(prefix, true);
+        }
+        int last = end.length() - 1;
+        end = end.substring(0, last) + (char) (end.charAt(last) + 1);
+        return prefixIndex.subSet(prefix, true, end, false);
+    }
+
+    private void indexPrefix(String key) {
+        if (prefixIndex != null) {
+            prefixIndex.add(key);
+        }
+    }
+
     @Override
     public Set<Entry<String, String>> entrySet() {
         return new AbstractSet<Entry<String, String>>() {
             @Override
             public Iterator<Entry<String, String>> iterator() {
                 return new Iterator<Entry<String, String>>() {
-                    private final Iterator<Entry<String, String>> iter =
+                    private final Iterator<Entry<String, PropertiesParser.Token>> iter =
                             values.entrySet().iterator();
                     private Entry<String, String> currentEntry;
 
@@ -245,7 +450,8 @@ public class Properties extends AbstractMap<String, String> {
 
                     @Override
                     public Entry<String, String> next() {
-                        return (currentEntry = iter.next());
+                        Entry<String, PropertiesParser.Token> e = iter.next();
+                        return (currentEntry = new ValueEntry(e.getKey(), e.getValue()));
                     }
 
                     @Override
@@ -254,6 +460,10 @@ public class Properties extends AbstractMap<String, String> {
                             removeItem(currentEntry.getKey());
                         }
                         iter.remove();
+                        if (listeners != null && currentEntry != null) {
+                            valueChanged(currentEntry.getKey(), currentEntry.getValue(), null);
+                            fire();
+                        }
                     }
                 };
             }
@@ -265,6 +475,15 @@ public class Properties extends AbstractMap<String, String> {
         };
     }
 
+    // Returns the live map of keys to VALUE tokens
+    Map<String, PropertiesParser.Token> valueTokens() {
+        return values;
+    }
+
+    Properties defaults() {
+        return defaults;
+    }
+
     /**
      * Works like <code>keySet()</code> but returning the keys' raw values. Meaning that the keys
      * haven't been unescaped before being returned.
@@ -304,9 +523,59 @@ public class Properties extends AbstractMap<String, String> {
                 .collect(Collectors.toCollection(LinkedHashSet::new));
     }
 
+    // Entries that get their values from the VALUE tokens and whose values can be changed
+    private class ValueEntry implements Entry<String, String> {
+        private final String key;
+        private PropertiesParser.Token valueToken;
+
+        ValueEntry(String key, PropertiesParser.Token valueToken) {
+            this.key = key;
+            this.valueToken = valueToken;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public String getValue() {
+            return valueToken.getText();
+        }
+
+        @Override
+        public String setValue(String value) {
+            String old = put(key, value);
+            valueToken = values.get(key);
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) return false;
+            Entry<?, ?> e = (Entry<?, ?>) o;
+            return key.equals(e.getKey()) && getValue().equals(e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ getValue().hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
+        }
+    }
+
     @Override
     public String get(Object key) {
-        return values.get(key);
+        return text(values.get(key));
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return values.containsKey(key);
     }
 
     /**
@@ -333,14 +602,16 @@ public class Properties extends AbstractMap<String, String> {
         if (key == null || value == null) {
             throw new NullPointerException();
         }
-        String rawValue = escapeValue(value);
+        PropertiesParser.Token valueToken =
+                new PropertiesParser.Token(PropertiesParser.Type.VALUE, escapeValue(value), value);
         if (values.containsKey(key)) {
-            replaceValue(key, rawValue, value);
+            replaceValue(key, valueToken);
         } else {
             String rawKey = escapeKey(key);
-            addNewKeyValue(rawKey, key, rawValue, value);
+            addNewKeyValue(rawKey, key, valueToken);
+            indexPrefix(key);
         }
-        return values.put(key, value);
+        return text(putValue(key, valueToken));
     }
 
     /**
@@ -354,9 +625,15 @@ public class Properties extends AbstractMap<String, String> {
      * @return the previous value associated with key, or null if there was no mapping for key
      */
     public String putCommented(String key, String value, String... comment) {
-        String old = put(key, value);
-        setComment(key, comment);
-        return old;
+        batchDepth++;
+        try {
+            String old = put(key, value);
+            setComment(key, comment);
+            return old;
+        } finally {
+            batchDepth--;
+            fire();
+        }
     }
 
     /**
@@ -369,25 +646,57 @@ public class Properties extends AbstractMap<String, String> {
      */
     public String putRaw(String rawKey, String rawValue) {
         String key = unescape(rawKey);
-        String value = unescape(rawValue);
+        PropertiesParser.Token valueToken =
+                new PropertiesParser.Token(
+                        PropertiesParser.Type.VALUE, rawValue, unescape(rawValue));
         if (values.containsKey(key)) {
-            replaceValue(key, rawValue, value);
+            replaceValue(key, valueToken);
         } else {
-            addNewKeyValue(rawKey, key, rawValue, value);
+            addNewKeyValue(rawKey, key, valueToken);
+            indexPrefix(key);
         }
-        return values.put(key, value);
+        return text(putValue(key, valueToken));
     }
 
-    private void replaceValue(String key, String rawValue, String value) {
+    private PropertiesParser.Token putValue(String key, PropertiesParser.Token valueToken) {
+        PropertiesParser.Token old = values.put(key, valueToken);
+        changed();
+        if (edit != null) {
+            if (old != null) {
+                edit.journal.add(() -> values.put(key, old));
+            } else {
+                // The key was added by `addNewKeyValue()`
+                edit.journal.add(
+                        () -> {
+                            values.remove(key);
+                            keyIndex.remove(key);
+                            if (prefixIndex != null) {
+                                prefixIndex.remove(key);
+                            }
+                        });
+            }
+        }
+        if (listeners != null) {
+            valueChanged(key, text(old), valueToken.getText());
+            fire();
+        }
+        return old;
+    }
+
+    private static String text(PropertiesParser.Token token) {
+        return token != null ? token.getText() : null;
+    }
+
+    private void replaceValue(String key, PropertiesParser.Token valueToken) {
         Cursor pos = indexOf(key);
         validate(pos.nextIf(PropertiesParser.Type.KEY), pos);
         validate(pos.nextIf(PropertiesParser.Type.SEPARATOR), pos);
         validate(pos.isType(PropertiesParser.Type.VALUE), pos);
-        pos.replace(new PropertiesParser.Token(PropertiesParser.Type.VALUE, rawValue, value));
+        pos.replace(valueToken);
     }
 
     // Add new tokens to the end of the list of tokens
-    private Cursor addNewKeyValue(String rawKey, String key, String rawValue, String value) {
+    private Cursor addNewKeyValue(String rawKey, String key, PropertiesParser.Token valueToken) {
         // Track back from end until we encounter the last VALUE token (if any)
         Cursor pos = last();
         while (pos.isType(PropertiesParser.Type.WHITESPACE, PropertiesParser.Type.COMMENT)) {
@@ -417,9 +726,15 @@ public class Properties extends AbstractMap<String, String> {
             }
         }
         // Add tokens for key, separator and value
-        pos.add(new PropertiesParser.Token(PropertiesParser.Type.KEY, rawKey, key));
+        PropertiesParser.Token keyToken =
+                new PropertiesParser.Token(PropertiesParser.Type.KEY, rawKey, key);
+        if (keyIndex.putIfAbsent(key, keyToken) != null) {
+            duplicateKeys = true;
+            duplicates.add(key);
+        }
+        pos.add(keyToken);
         pos.add(new PropertiesParser.Token(PropertiesParser.Type.SEPARATOR, "="));
-        pos.add(new PropertiesParser.Token(PropertiesParser.Type.VALUE, rawValue, value));
+        pos.add(valueToken);
         return pos;
     }
 
@@ -428,7 +743,12 @@ public class Properties extends AbstractMap<String, String> {
         String skey = key.toString();
         if (containsKey(key)) {
             removeItem(skey);
-            return values.remove(skey);
+            String old = text(values.remove(skey));
+            if (listeners != null) {
+                valueChanged(skey, old, null);
+                fire();
+            }
+            return old;
         } else {
             return null;
         }
@@ -436,8 +756,9 @@ public class Properties extends AbstractMap<String, String> {
 
     // Calling code MUST make sure skey exists!
     private void removeItem(String skey) {
-        setComment(skey, Collections.emptyList());
         Cursor pos = indexOf(skey);
+        setComment(findPropertyCommentLines(pos), pos, Collections.emptyList());
+        pos = indexOf(skey);
         validate(pos.isType(PropertiesParser.Type.KEY), pos);
         pos.remove();
         validate(pos.isType(PropertiesParser.Type.SEPARATOR), pos);
@@ -447,12 +768,541 @@ public class Properties extends AbstractMap<String, String> {
         if (pos.isEol()) {
             pos.remove();
         }
+        keyIndex.remove(skey);
+        if (prefixIndex != null) {
+            prefixIndex.remove(skey);
+        }
+        changed();
+        journalReindex();
+        if (duplicates.contains(skey)) {
+            // The indexed occurrence is the first one, so any other occurrence comes after it
+            PropertiesParser.Token next = nextKey(skey, pos.position());
+            if (next != null) {
+                keyIndex.put(skey, next);
+            } else {
+                duplicates.remove(skey);
+                duplicateKeys = !duplicates.isEmpty();
+            }
+        }
+    }
+
+    // Returns the first KEY token for the given key at or after the given position
+    private PropertiesParser.Token nextKey(String key, int from) {
+        for (int i = from; i < tokens.size(); i++) {
+            PropertiesParser.Token token = tokens.get(i);
+            if (token.type == PropertiesParser.Type.KEY && token.getText().equals(key)) {
+                return token;
+            }
+        }
+        return null;
     }
 
     @Override
     public void clear() {
+        if (listeners != null) {
+            values.forEach((k, v) -> valueChanged(k, v.getText(), null));
+        }
         tokens.clear();
         values.clear();
+        if (prefixIndex != null) {
+            prefixIndex.clear();
+        }
+        changed();
+        keyIndex.clear();
+        duplicateKeys = false;
+        duplicates.clear();
+        journalReindex();
+        fire();
+    }
+
+    /**
+     * Removes and sets many properties at once. The result is the same as first calling <code>
+     * remove()</code> for each of the keys to remove and then <code>put()</code> for each of the
+     * entries to put, but all the tokens of the removed properties are taken out of the token list
+     * in a single pass, which makes this a lot faster than separate calls when removing many
+     * properties from a large file. Properties that didn't exist yet are added at the end, in the
+     * order they are returned by the map. Listeners get notified of all the changes at once.
+     *
+     * @param puts the keys and values to set
+     * @param removes the keys to remove
+     * @throws NullPointerException if any of the keys or values to put is null
+     */
+    public void applyBatch(Map<String, String> puts, Collection<String> removes) {
+        for (Entry<String, String> e : puts.entrySet()) {
+            if (e.getKey() == null || e.getValue() == null) {
+                throw new NullPointerException();
+            }
+        }
+        batch(() -> applyChanges(puts, removes));
+    }
+
+    private void applyChanges(Map<String, String> puts, Collection<String> removes) {
+        if (duplicateKeys) {
+            // Removing a key that occurs more than once changes which of its tokens are
+            // indexed, so in that case we simply make the changes one at a time
+            removes.forEach(this::remove);
+            puts.forEach(this::put);
+            return;
+        }
+
+        // Determine the positions of all the tokens to remove, which stay valid
+        // as long as the token list doesn't change
+        BitSet drop = new BitSet();
+        for (String key : removes) {
+            Cursor pos = indexOf(key);
+            if (pos.hasToken()) {
+                List<Integer> comments = findPropertyCommentLines(pos);
+                int start = comments.isEmpty() ? pos.position() : comments.get(0);
+                validate(pos.nextIf(PropertiesParser.Type.KEY), pos);
+                validate(pos.nextIf(PropertiesParser.Type.SEPARATOR), pos);
+                validate(pos.nextIf(PropertiesParser.Type.VALUE), pos);
+                drop.set(start, pos.isEol() ? pos.position() + 1 : pos.position());
+                PropertiesParser.Token old = values.remove(key);
+                if (listeners != null) {
+                    valueChanged(key, old.getText(), null);
+                }
+                keyIndex.remove(key);
+                if (prefixIndex != null) {
+                    prefixIndex.remove(key);
+                }
+            }
+        }
+        if (!drop.isEmpty()) {
+            tokens.removeAll(drop);
+            changed();
+            journalReindex();
+        }
+
+        puts.forEach(this::put);
+    }
+
+    /**
+     * Compares this object, seen as the old properties, to the given one, seen as the new
+     * properties, and returns the differences: the properties that were added, removed or changed
+     * and the comments that changed. Only the properties themselves are compared, not their
+     * defaults. The comparison takes time proportional to the number of properties in both objects.
+     * The result can be applied to another <code>Properties</code> object to make the same changes
+     * to it.
+     *
+     * @param other the new properties
+     * @return a <code>PropertiesDiff</code> object
+     */
+    public PropertiesDiff diff(Properties other) {
+        Map<String, String> added = new LinkedHashMap<>();
+        Map<String, String> removed = new LinkedHashMap<>();
+        Map<String, PropertyChange> changed = new LinkedHashMap<>();
+        Map<String, List<String>> comments = new LinkedHashMap<>();
+        Map<String, String> rawKeys = new HashMap<>();
+        Map<String, String> rawValues = new HashMap<>();
+        Map<String, List<String>> oldComments = commentsByKey();
+        Map<String, List<String>> newComments = other.commentsByKey();
+        for (Entry<String, PropertiesParser.Token> e : values.entrySet()) {
+            String key = e.getKey();
+            PropertiesParser.Token value = e.getValue();
+            PropertiesParser.Token otherValue = other.values.get(key);
+            if (otherValue == null) {
+                removed.put(key, value.getText());
+                continue;
+            }
+            // Comparing the raw values first avoids unescaping them when they are the same
+            if (!value.getRaw().equals(otherValue.getRaw())
+                    && !value.getText().equals(otherValue.getText())) {
+                changed.put(key, new PropertyChange(value.getText(), otherValue.getText()));
+                rawKeys.put(key, keyIndex.get(key).getRaw());
+                rawValues.put(key, otherValue.getRaw());
+            }
+            List<String> otherComment = newComments.getOrDefault(key, Collections.emptyList());
+            if (!oldComments.getOrDefault(key, Collections.emptyList()).equals(otherComment)) {
+                comments.put(key, otherComment);
+            }
+        }
+        for (Entry<String, PropertiesParser.Token> e : other.values.entrySet()) {
+            String key = e.getKey();
+            if (!values.containsKey(key)) {
+                added.put(key, e.getValue().getText());
+                rawKeys.put(key, other.keyIndex.get(key).getRaw());
+                rawValues.put(key, e.getValue().getRaw());
+                List<String> otherComment = newComments.get(key);
+                if (otherComment != null) {
+                    comments.put(key, otherComment);
+                }
+            }
+        }
+        return new PropertiesDiff(added, removed, changed, comments, rawKeys, rawValues);
+    }
+
+    // Returns the comments of all keys that have any, using a single pass over the tokens instead
+    // of looking up the position of each key separately
+    private Map<String, List<String>> commentsByKey() {
+        Map<String, List<String>> result = new HashMap<>();
+        for (Cursor pos = first(); pos.hasToken(); pos.next()) {
+            if (pos.isType(PropertiesParser.Type.KEY)) {
+                List<Integer> indices = findPropertyCommentLines(pos);
+                if (!indices.isEmpty()) {
+                    // Just like `getComment()` we use the first occurrence of a key
+                    result.putIfAbsent(pos.token().getText(), getComment(indices));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Merges the changes that were made on two sides to the same base properties. Typically <code>
+     * ours</code> is a local copy of the base and <code>theirs</code> a new upstream version of it.
+     * The result follows the layout of our side: all its whitespace and comments, as well as any
+     * lines that don't belong to a property, are kept. For every property the side that changed it
+     * wins: when only they changed the value or the comment, their key, separator and value, or
+     * their comment lines, replace ours. Properties they removed are removed unless we changed
+     * them, properties they added are put right after the property that precedes them on their
+     * side. When both sides changed a value in different ways the property is reported as a
+     * conflict and our version is kept, for comments our version simply wins. Only the properties
+     * themselves are merged, not their defaults. The merge works directly on the tokens of the
+     * three objects and takes time proportional to their size.
+     *
+     * @param base the properties both sides started from
+     * @param ours our changed version of the base
+     * @param theirs their changed version of the base
+     * @return a <code>PropertiesMerge</code> object containing the merged properties and the
+     *     conflicts
+     */
+    public static PropertiesMerge merge(Properties base, Properties ours, Properties theirs) {
+        Map<String, Block> baseBlocks = base.blocks();
+        Map<String, Block> ourBlocks = ours.blocks();
+        Map<String, Block> theirBlocks = theirs.blocks();
+        Map<String, PropertiesMerge.Conflict> conflicts = new LinkedHashMap<>();
+        Map<String, PropertiesMerge.Conflict> removedConflicts = new LinkedHashMap<>();
+
+        // Properties only they added, grouped by the property they should follow (null meaning
+        // they go before our first property)
+        Map<String, List<Block>> insertions = new HashMap<>();
+        String anchor = null;
+        for (Entry<String, Block> e : theirBlocks.entrySet()) {
+            String key = e.getKey();
+            Block theirBlock = e.getValue();
+            if (ourBlocks.containsKey(key)) {
+                // Properties they still have are never removed from ours
+                anchor = key;
+                continue;
+            }
+            Block baseBlock = baseBlocks.get(key);
+            if (baseBlock == null) {
+                insertions.computeIfAbsent(anchor, k -> new ArrayList<>()).add(theirBlock);
+            } else if (!baseBlock.sameValue(theirBlock)) {
+                removedConflicts.put(
+                        key,
+                        new PropertiesMerge.Conflict(
+                                baseBlock.value.getText(), null, theirBlock.value.getText()));
+            }
+        }
+
+        List<PropertiesParser.Token> merged = new ArrayList<>(ours.tokens.size());
+        int pos = 0;
+        boolean first = true;
+        for (Entry<String, Block> e : ourBlocks.entrySet()) {
+            String key = e.getKey();
+            Block ourBlock = e.getValue();
+            Block baseBlock = baseBlocks.get(key);
+            Block theirBlock = theirBlocks.get(key);
+            Block.copy(ours.tokens, pos, ourBlock.start, merged);
+            if (first) {
+                for (Block b : insertions.getOrDefault(null, Collections.emptyList())) {
+                    b.copyAll(merged);
+                    merged.add(PropertiesParser.Token.EOL);
+                }
+                first = false;
+            }
+            pos = ourBlock.end;
+            if (theirBlock == null) {
+                if (baseBlock != null) {
+                    if (baseBlock.sameValue(ourBlock)) {
+                        // Removed by them, so we skip it, including its line ending
+                        if (pos < ours.tokens.size() && ours.tokens.get(pos).isEol()) {
+                            pos++;
+                        }
+                        continue;
+                    }
+                    conflicts.put(
+                            key,
+                            new PropertiesMerge.Conflict(
+                                    baseBlock.value.getText(), ourBlock.value.getText(), null));
+                }
+                ourBlock.copyAll(merged);
+            } else if (baseBlock == null) {
+                if (!ourBlock.sameValue(theirBlock)) {
+                    conflicts.put(
+                            key,
+                            new PropertiesMerge.Conflict(
+                                    null, ourBlock.value.getText(), theirBlock.value.getText()));
+                }
+                ourBlock.copyAll(merged);
+            } else {
+                boolean weChanged = !baseBlock.sameValue(ourBlock);
+                boolean theyChanged = !baseBlock.sameValue(theirBlock);
+                if (weChanged && theyChanged && !ourBlock.sameValue(theirBlock)) {
+                    conflicts.put(
+                            key,
+                            new PropertiesMerge.Conflict(
+                                    baseBlock.value.getText(),
+                                    ourBlock.value.getText(),
+                                    theirBlock.value.getText()));
+                }
+                Block valueBlock = theyChanged && !weChanged ? theirBlock : ourBlock;
+                List<String> baseComment = baseBlock.comment();
+                Block commentBlock =
+                        ourBlock.comment().equals(baseComment)
+                                        && !theirBlock.comment().equals(baseComment)
+                                ? theirBlock
+                                : ourBlock;
+                commentBlock.copyComment(merged);
+                valueBlock.copyProperty(merged);
+            }
+            for (Block b : insertions.getOrDefault(key, Collections.emptyList())) {
+                merged.add(PropertiesParser.Token.EOL);
+                b.copyAll(merged);
+            }
+        }
+        Block.copy(ours.tokens, pos, ours.tokens.size(), merged);
+        if (first && insertions.containsKey(null)) {
+            // We have no properties at all, so they simply go at the end
+            if (!merged.isEmpty() && !merged.get(merged.size() - 1).isEol()) {
+                merged.add(PropertiesParser.Token.EOL);
+            }
+            for (Block b : insertions.get(null)) {
+                b.copyAll(merged);
+                merged.add(PropertiesParser.Token.EOL);
+            }
+        }
+        conflicts.putAll(removedConflicts);
+        return new PropertiesMerge(new Properties(null, merged), conflicts);
+    }
+
+    // A property together with the comment lines before it, as a range of the tokens of the
+    // properties object it belongs to
+    private static class Block {
+        final TokenList tokens;
+        // The position of the first comment line, or of the key if there is no comment
+        final int start;
+        final int key;
+        // The position right after the value
+        final int end;
+        final PropertiesParser.Token value;
+
+        Block(TokenList tokens, int start, int key, PropertiesParser.Token value) {
+            this.tokens = tokens;
+            this.start = start;
+            this.key = key;
+            this.end = key + 3;
+            this.value = value;
+        }
+
+        boolean sameValue(Block other) {
+            return value.getRaw().equals(other.value.getRaw())
+                    || value.getText().equals(other.value.getText());
+        }
+
+        List<String> comment() {
+            List<String> result = new ArrayList<>();
+            for (int i = start; i < key; i++) {
+                PropertiesParser.Token token = tokens.get(i);
+                if (token.type == PropertiesParser.Type.COMMENT) {
+                    result.add(token.getText());
+                }
+            }
+            return result;
+        }
+
+        void copyAll(List<PropertiesParser.Token> out) {
+            copy(tokens, start, end, out);
+        }
+
+        void copyComment(List<PropertiesParser.Token> out) {
+            copy(tokens, start, key, out);
+        }
+
+        void copyProperty(List<PropertiesParser.Token> out) {
+            copy(tokens, key, end, out);
+        }
+
+        static void copy(TokenList tokens, int from, int to, List<PropertiesParser.Token> out) {
+            for (int i = from; i < to; i++) {
+                out.add(tokens.get(i));
+            }
+        }
+    }
+
+    // Returns the blocks of all properties in the order they appear in the tokens. When a key
+    // occurs more than once it's the occurrence whose value is used that gets returned, the other
+    // ones are treated like any other lines that are not part of a property
+    private Map<String, Block> blocks() {
+        Map<String, Block> result = new LinkedHashMap<>();
+        for (Cursor pos = first(); pos.hasToken(); pos.next()) {
+            if (pos.isType(PropertiesParser.Type.KEY)) {
+                String key = pos.token().getText();
+                PropertiesParser.Token value = tokens.get(pos.position() + 2);
+                if (value == values.get(key)) {
+                    List<Integer> comments = findPropertyCommentLines(pos);
+                    int start = comments.isEmpty() ? pos.position() : comments.get(0);
+                    result.put(key, new Block(tokens, start, pos.position(), value));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Starts an edit session. All changes made to this object from now on, until the session is
+     * either committed or rolled back, are recorded in a log of actions that undo them. Committing
+     * simply stops the recording, rolling back undoes all the changes in reverse order, which takes
+     * time proportional to the number of changes, not to the number of properties. The only
+     * exception is when properties have been removed: putting their keys back in their original
+     * order means all the keys have to be indexed again. Only one edit session can be in progress
+     * at the same time.
+     *
+     * @return an <code>EditSession</code> object
+     * @throws IllegalStateException if an edit session is already in progress
+     */
+    public EditSession beginEdit() {
+        if (edit != null) {
+            throw new IllegalStateException("An edit session is already in progress");
+        }
+        edit = new EditSession(this, duplicateKeys);
+        tokens.journal(edit.journal);
+        return edit;
+    }
+
+    // Called by the session to end it, undoing all its changes if requested
+    void endEdit(EditSession session, boolean rollback) {
+        tokens.journal(null);
+        edit = null;
+        if (rollback) {
+            // The values of the changed properties before they get rolled back
+            Map<String, String> before = null;
+            if (listeners != null) {
+                before = new LinkedHashMap<>();
+                for (String key : session.keys) {
+                    before.put(key, get(key));
+                }
+            }
+            List<Runnable> journal = session.journal;
+            for (int i = journal.size() - 1; i >= 0; i--) {
+                journal.get(i).run();
+            }
+            if (session.reindex) {
+                reindex();
+            } else {
+                duplicateKeys = session.duplicateKeys;
+            }
+            changed();
+            if (before != null) {
+                before.forEach((key, value) -> valueChanged(key, value, get(key)));
+                for (String key : session.commentKeys) {
+                    if (containsKey(key)) {
+                        event().comment(key);
+                    }
+                }
+                fire();
+            }
+        }
+    }
+
+    /**
+     * Adds a listener that gets notified after properties have been added, changed or removed, or
+     * their comments were set. Listeners are called synchronously, by the thread making the
+     * changes, and should not change the properties themselves. When no listeners have been added
+     * changes are not tracked at all.
+     *
+     * @param listener the listener to add
+     */
+    public void addChangeListener(PropertiesChangeListener listener) {
+        Objects.requireNonNull(listener);
+        if (listeners == null) {
+            listeners = new ArrayList<>();
+        }
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener that was added using <code>addChangeListener()</code>.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeChangeListener(PropertiesChangeListener listener) {
+        if (listeners != null && listeners.remove(listener) && listeners.isEmpty()) {
+            listeners = null;
+            event = null;
+        }
+    }
+
+    /**
+     * Runs the given code, collecting all the changes it makes to this object and notifying the
+     * listeners of them with a single event once it's done. Batches can be nested, in which case
+     * the listeners get notified when the outermost batch is done.
+     *
+     * @param changes the code that makes the changes
+     */
+    public void batch(Runnable changes) {
+        batchDepth++;
+        try {
+            changes.run();
+        } finally {
+            batchDepth--;
+            fire();
+        }
+    }
+
+    // Adds a change to the event that will be sent to the listeners,
+    // only called when there are listeners
+    private void valueChanged(String key, String oldValue, String newValue) {
+        event().change(key, oldValue, newValue);
+        if (edit != null) {
+            edit.keys.add(key);
+        }
+    }
+
+    private PropertiesChangeEvent event() {
+        if (event == null) {
+            event = new PropertiesChangeEvent(this);
+        }
+        return event;
+    }
+
+    // Sends the collected changes to the listeners, unless a batch is in progress
+    private void fire() {
+        if (batchDepth == 0 && event != null) {
+            PropertiesChangeEvent e = event;
+            event = null;
+            if (listeners != null && !e.isEmpty()) {
+                for (PropertiesChangeListener listener : new ArrayList<>(listeners)) {
+                    listener.propertiesChanged(e);
+                }
+            }
+        }
+    }
+
+    // Marks the values as having to be recreated from the tokens when the edit is rolled back
+    private void journalReindex() {
+        if (edit != null) {
+            edit.reindex = true;
+        }
+    }
+
+    // Recreates the values and the indices from the tokens
+    private void reindex() {
+        values.clear();
+        indexKeys();
+        String key = null;
+        for (PropertiesParser.Token token : tokens) {
+            if (token.type == PropertiesParser.Type.KEY) {
+                key = token.getText();
+            } else if (token.type == PropertiesParser.Type.VALUE) {
+                values.put(key, token);
+            }
+        }
+        if (prefixIndex != null) {
+            prefixIndex.clear();
+            prefixIndex.addAll(values.keySet());
+        }
     }
 
     /**
@@ -512,6 +1362,13 @@ public class Properties extends AbstractMap<String, String> {
         List<Integer> indices = findPropertyCommentLines(pos);
         List<String> oldcs = getComment(indices);
         setComment(indices, pos, comments);
+        if (listeners != null) {
+            event().comment(key);
+            if (edit != null) {
+                edit.commentKeys.add(key);
+            }
+            fire();
+        }
         return oldcs;
     }
 
@@ -618,13 +1475,27 @@ public class Properties extends AbstractMap<String, String> {
     }
 
     private Cursor indexOf(String key) {
-        return index(
-                tokens.indexOf(
-                        new PropertiesParser.Token(
-                                PropertiesParser.Type.KEY, escapeKey(key), key)));
+        PropertiesParser.Token token = keyIndex.get(key);
+        return index(token != null ? tokens.positionOf(token) : -1);
+    }
+
+    // Rebuilds the key index. When the same key occurs more than once
+    // it's the first occurrence that gets indexed
+    private void indexKeys() {
+        keyIndex.clear();
+        duplicateKeys = false;
+        duplicates.clear();
+        for (PropertiesParser.Token token : tokens) {
+            if (token.type == PropertiesParser.Type.KEY) {
+                if (keyIndex.putIfAbsent(token.getText(), token) != null) {
+                    duplicateKeys = true;
+                    duplicates.add(token.getText());
+                }
+            }
+        }
     }
 
-    private static String escapeValue(String value) {
+    static String escapeValue(String value) {
         return value.replace("\\", "\\\\")
                 .replace("\n", "\\n")
                 .replace("\r", "\\r")
@@ -632,7 +1503,7 @@ public class Properties extends AbstractMap<String, String> {
                 .replace("\f", "\\f");
     }
 
-    private static String escapeKey(String key) {
+    static String escapeKey(String key) {
         return escapeValue(key).replace(" ", "\\ ");
     }
 
@@ -697,9 +1568,9 @@ public class Properties extends AbstractMap<String, String> {
     }
 
     private static PropertiesParser.Token escapeToken(PropertiesParser.Token token) {
-        String raw = escapeUnicode(token.raw);
-        if (!raw.equals(token.raw)) {
-            token = new PropertiesParser.Token(token.type, raw, token.text);
+        String raw = escapeUnicode(token.getRaw());
+        if (!raw.equals(token.getRaw())) {
+            token = new PropertiesParser.Token(token.type, raw, token.getText());
         }
         return token;
     }
@@ -724,9 +1595,9 @@ public class Properties extends AbstractMap<String, String> {
     }
 
     private static PropertiesParser.Token unescapeToken(PropertiesParser.Token token) {
-        String raw = unescapeUnicode(token.raw);
-        if (!raw.equals(token.raw)) {
-            token = new PropertiesParser.Token(token.type, raw, token.text);
+        String raw = unescapeUnicode(token.getRaw());
+        if (!raw.equals(token.getRaw())) {
+            token = new PropertiesParser.Token(token.type, raw, token.getText());
         }
         return token;
     }
@@ -799,8 +1670,9 @@ public class Properties extends AbstractMap<String, String> {
     }
 
     /**
-     * Loads the contents from the given file and stores it in this object. This includes not only
-     * properties but also all whitespace and any comments that are encountered.
+     * Loads the contents from the given file and stores it in this object, replacing its current
+     * contents. This includes not only properties but also all whitespace and any comments that are
+     * encountered.
      *
      * @param file a path to the file to load
      * @throws IOException Thrown when any IO error occurs during loading
@@ -812,8 +1684,303 @@ public class Properties extends AbstractMap<String, String> {
     }
 
     /**
-     * Loads the contents from the input and stores it in this object. This includes not only
-     * properties but also all whitespace and any comments that are encountered.
+     * Loads the contents from the given file and stores it in this object, replacing its current
+     * contents. This includes not only properties but also all whitespace and any comments that are
+     * encountered. The given options determine how the file is read.
+     *
+     * @param file a path to the file to load
+     * @param options a <code>LoadOptions</code> object
+     * @throws IOException Thrown when any IO error occurs during loading
+     */
+    public void load(Path file, LoadOptions options) throws IOException {
+        if (options.memoryMapped() && PropertiesParser.supportsBytes(options.charset())) {
+            PropertiesParser.ByteSource source = map(file, options.charset());
+            if (source != null) {
+                if (options.parallelism() > 1) {
+                    replace(
+                            PropertiesParser.tokens(
+                                    source, options.lazyDecoding(), options.parallelism()));
+                } else {
+                    load(PropertiesParser.tokens(source, options.lazyDecoding()));
+                }
+                return;
+            }
+        }
+        try (Reader br = Files.newBufferedReader(file, options.charset())) {
+            load(br);
+        }
+    }
+
+    /**
+     * Loads the new contents of the given file, which this object was loaded from earlier, but only
+     * parses the lines that changed. The lines at the start and the end of the file that are still
+     * the same are found by comparing the file's contents to the tokens of this object, only the
+     * lines in between are parsed again and replace the tokens they had before. The properties in
+     * those lines get updated in place, keeping the order of all other properties the same, and
+     * listeners are only notified of the properties whose values actually changed. The end result
+     * is the same as calling <code>load()</code>. The file is read as UTF-8.
+     *
+     * @param file a path to the file to load
+     * @throws IOException Thrown when any IO error occurs during loading
+     */
+    public void reload(Path file) throws IOException {
+        reload(file, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Works like <code>reload(Path)</code> but reads the file using the given character set.
+     *
+     * @param file a path to the file to load
+     * @param charset the character set used to decode the file
+     * @throws IOException Thrown when any IO error occurs during loading
+     */
+    public void reload(Path file, Charset charset) throws IOException {
+        String text =
+                charset.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPORT)
+                        .onUnmappableCharacter(CodingErrorAction.REPORT)
+                        .decode(ByteBuffer.wrap(Files.readAllBytes(file)))
+                        .toString();
+        if (!reloadChanged(text)) {
+            load(new StringReader(text));
+        }
+    }
+
+    // Replaces the tokens of the lines that differ from the given text by the tokens of the new
+    // lines. Returns false if this isn't possible and the whole text has to be loaded instead
+    private boolean reloadChanged(String text) throws IOException {
+        int n = tokens.size();
+        for (PropertiesParser.Token token : tokens) {
+            if (token instanceof PropertiesParser.LazyToken) {
+                // Their contents might come from the file we're reloading
+                return false;
+            }
+        }
+
+        // Skip the tokens at the start that are still the same and go back to the start of the
+        // line, which is where we can start parsing
+        int start = 0;
+        int head = 0;
+        while (start < n && text.startsWith(tokens.get(start).getRaw(), head)) {
+            head += tokens.get(start++).getRaw().length();
+        }
+        if (start == n && head == text.length()) {
+            return true;
+        }
+        while (start > 0 && !tokens.get(start - 1).isEol()) {
+            head -= tokens.get(--start).getRaw().length();
+        }
+        if (start > 0 && head < text.length() && text.charAt(head) == '\n') {
+            String raw = tokens.get(start - 1).getRaw();
+            if (raw.charAt(raw.length() - 1) == '\r') {
+                // The line break before the changed lines becomes part of a CRLF, so the line
+                // before it has to be parsed again as well
+                do {
+                    head -= tokens.get(--start).getRaw().length();
+                } while (start > 0 && !tokens.get(start - 1).isEol());
+            }
+        }
+        // Skip the tokens at the end that are still the same, without overlapping the ones at the
+        // start, and go forward to the start of a line, which is where parsing can stop
+        int end = n;
+        int tail = text.length();
+        while (end > start) {
+            String raw = tokens.get(end - 1).getRaw();
+            if (tail - raw.length() < head || !text.startsWith(raw, tail - raw.length())) {
+                break;
+            }
+            tail -= raw.length();
+            end--;
+        }
+        while (end > start && end < n && !tokens.get(end - 1).isEol()) {
+            tail += tokens.get(end++).getRaw().length();
+        }
+        while (end < n && continues(text, tail)) {
+            // The last changed line now continues onto the next one, which has to be parsed
+            // again as well
+            do {
+                tail += tokens.get(end++).getRaw().length();
+            } while (end < n && !tokens.get(end - 1).isEol());
+        }
+        String changed = text.substring(head, tail);
+        if (tail < text.length()) {
+            char last = changed.isEmpty() ? '\n' : changed.charAt(changed.length() - 1);
+            if (last != '\n' && last != '\r' || last == '\r' && text.charAt(tail) == '\n') {
+                // The changed lines don't end where the unchanged ones start
+                return false;
+            }
+        }
+        List<PropertiesParser.Token> parsed =
+                collect(PropertiesParser.tokens(new StringReader(changed)));
+
+        List<String> oldKeys = keysOf(tokens.subList(start, end));
+        List<String> newKeys = keysOf(parsed);
+        Map<String, String> before = null;
+        if (listeners != null) {
+            before = new LinkedHashMap<>();
+            for (String key : oldKeys) {
+                before.put(key, get(key));
+            }
+            for (String key : newKeys) {
+                before.putIfAbsent(key, get(key));
+            }
+        }
+        boolean inPlace =
+                allHaveValues(tokens.subList(start, end))
+                        && allHaveValues(parsed)
+                        && canReplaceInPlace(oldKeys, newKeys, end);
+
+        if (inPlace) {
+            Set<String> removed = new HashSet<>(oldKeys);
+            removed.removeAll(newKeys);
+            for (String key : removed) {
+                values.remove(key);
+                keyIndex.remove(key);
+                if (prefixIndex != null) {
+                    prefixIndex.remove(key);
+                }
+            }
+        }
+        if (start < end) {
+            BitSet drop = new BitSet();
+            drop.set(start, end);
+            tokens.removeAll(drop);
+        }
+        tokens.addAll(start, parsed);
+        if (inPlace) {
+            String key = null;
+            for (PropertiesParser.Token token : parsed) {
+                if (token.type == PropertiesParser.Type.KEY) {
+                    key = token.getText();
+                    keyIndex.put(key, token);
+                } else if (token.type == PropertiesParser.Type.VALUE) {
+                    values.put(key, token);
+                    indexPrefix(key);
+                }
+            }
+        } else {
+            reindex();
+        }
+        changed();
+        journalReindex();
+
+        if (before != null) {
+            before.forEach((key, value) -> valueChanged(key, value, get(key)));
+            fire();
+        }
+        return true;
+    }
+
+    // Determines if the line that ends right before the given position ends in an odd number of
+    // backslashes, which means the line that follows is a continuation of it
+    private static boolean continues(String text, int pos) {
+        int p = pos;
+        if (p > 0 && text.charAt(p - 1) == '\n') {
+            p--;
+        }
+        if (p > 0 && text.charAt(p - 1) == '\r') {
+            p--;
+        }
+        int backslashes = 0;
+        while (p > 0 && text.charAt(p - 1) == '\\') {
+            backslashes++;
+            p--;
+        }
+        return backslashes % 2 == 1;
+    }
+
+    private static List<String> keysOf(List<PropertiesParser.Token> ts) {
+        List<String> keys = new ArrayList<>();
+        for (PropertiesParser.Token token : ts) {
+            if (token.type == PropertiesParser.Type.KEY) {
+                keys.add(token.getText());
+            }
+        }
+        return keys;
+    }
+
+    // Determines if every key is followed by a value, which isn't the case for a key at the very
+    // end of the input, that one doesn't result in a property at all
+    private static boolean allHaveValues(List<PropertiesParser.Token> ts) {
+        boolean key = false;
+        for (PropertiesParser.Token token : ts) {
+            if (token.type == PropertiesParser.Type.KEY) {
+                if (key) {
+                    return false;
+                }
+                key = true;
+            } else if (token.type == PropertiesParser.Type.VALUE) {
+                key = false;
+            }
+        }
+        return !key;
+    }
+
+    // Determines if the properties of the changed lines can be updated without indexing all keys
+    // again, which is the case when the keys stay unique and in the same order and any new keys
+    // come after all the others, because that's where they get added to `values`
+    private boolean canReplaceInPlace(List<String> oldKeys, List<String> newKeys, int end) {
+        if (duplicateKeys) {
+            return false;
+        }
+        Set<String> oldSet = new HashSet<>(oldKeys);
+        Set<String> newSet = new HashSet<>(newKeys);
+        if (newSet.size() < newKeys.size()) {
+            return false;
+        }
+        boolean added = false;
+        for (String key : newKeys) {
+            if (!oldSet.contains(key)) {
+                if (values.containsKey(key)) {
+                    // It also exists outside of the changed lines
+                    return false;
+                }
+                added = true;
+            } else if (added) {
+                // A new key comes before one that is kept
+                return false;
+            }
+        }
+        // The keys that are kept have to stay in the same order
+        List<String> kept = new ArrayList<>(oldKeys);
+        kept.retainAll(newSet);
+        List<String> keptNew = new ArrayList<>(newKeys);
+        keptNew.retainAll(oldSet);
+        if (!kept.equals(keptNew)) {
+            return false;
+        }
+        if (added) {
+            // New keys get added at the end, so there can't be any keys after them
+            for (int i = end; i < tokens.size(); i++) {
+                if (tokens.get(i).type == PropertiesParser.Type.KEY) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // Only used by tests
+    List<PropertiesParser.Token> tokens() {
+        return Collections.unmodifiableList(tokens);
+    }
+
+    // Returns the memory-mapped contents of the file or null if the file is too large
+    private static PropertiesParser.ByteSource map(Path file, Charset charset) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                return null;
+            }
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new PropertiesParser.ByteSource(bytes, charset, file);
+        }
+    }
+
+    /**
+     * Loads the contents from the input and stores it in this object, replacing its current
+     * contents. This includes not only properties but also all whitespace and any comments that are
+     * encountered.
      *
      * @param in an <code>InputStream</code> object
      * @throws IOException Thrown when any IO error occurs during loading
@@ -823,32 +1990,63 @@ public class Properties extends AbstractMap<String, String> {
     }
 
     /**
-     * Loads the contents from the reader and stores it in this object. This includes not only
-     * properties but also all whitespace and any comments that are encountered.
+     * Loads the contents from the reader and stores it in this object, replacing its current
+     * contents. This includes not only properties but also all whitespace and any comments that are
+     * encountered.
      *
      * @param reader a <code>Reader</code> object
      * @throws IOException Thrown when any IO error occurs during loading
      */
     public void load(Reader reader) throws IOException {
+        // No need for a BufferedReader, the parser does its own buffering
+        load(PropertiesParser.tokens(reader));
+    }
+
+    private void load(Stream<PropertiesParser.Token> ts) throws IOException {
+        replace(collect(ts));
+    }
+
+    private void replace(List<PropertiesParser.Token> list) {
+        // The new contents replace all the current ones
+        if (listeners != null) {
+            values.forEach((k, v) -> valueChanged(k, v.getText(), null));
+        }
         tokens.clear();
-        BufferedReader br =
-                reader instanceof BufferedReader
-                        ? (BufferedReader) reader
-                        : new BufferedReader(reader);
-        List<PropertiesParser.Token> ts = PropertiesParser.tokens(br).collect(Collectors.toList());
-        load(ts);
+        values.clear();
+        if (prefixIndex != null) {
+            prefixIndex.clear();
+        }
+        load(list);
+    }
+
+    // Collects the tokens, throwing any IO errors that occur while parsing as they are
+    private static List<PropertiesParser.Token> collect(Stream<PropertiesParser.Token> ts)
+            throws IOException {
+        try {
+            return ts.collect(Collectors.toList());
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
     }
 
     private Properties load(List<PropertiesParser.Token> ts) {
         tokens.addAll(ts);
+        indexKeys();
         String key = null;
         for (PropertiesParser.Token token : tokens) {
             if (token.type == PropertiesParser.Type.KEY) {
                 key = token.getText();
             } else if (token.type == PropertiesParser.Type.VALUE) {
-                values.put(key, token.getText());
+                PropertiesParser.Token old = values.put(key, token);
+                indexPrefix(key);
+                if (listeners != null) {
+                    valueChanged(key, text(old), token.getText());
+                }
             }
         }
+        changed();
+        journalReindex();
+        fire();
         return this;
     }
 
@@ -865,6 +2063,49 @@ public class Properties extends AbstractMap<String, String> {
         return props;
     }
 
+    /**
+     * Returns a <code>Properties</code> with the contents read from the given file. This includes
+     * not only properties but also all whitespace and any comments that are encountered. The given
+     * options determine how the file is read.
+     *
+     * @param file a path to the file to load
+     * @param options a <code>LoadOptions</code> object
+     * @throws IOException Thrown when any IO error occurs during loading
+     */
+    public static Properties loadProperties(Path file, LoadOptions options) throws IOException {
+        Properties props = new Properties();
+        props.load(file, options);
+        return props;
+    }
+
+    /**
+     * Loads all the given files at the same time using the given executor, see <code>
+     * PropertiesLoader</code>. Fails as soon as any of the files can't be loaded.
+     *
+     * @param files the paths of the files to load
+     * @param executor an <code>Executor</code> or <code>null</code> to use the default one
+     * @return a map of paths and <code>Properties</code> objects, in the order of the given files
+     * @throws IOException Thrown when any IO error occurs during loading
+     */
+    public static Map<Path, Properties> loadAll(Collection<Path> files, Executor executor)
+            throws IOException {
+        return PropertiesLoader.create().withExecutor(executor).load(files).properties();
+    }
+
+    /**
+     * Loads all the files in the given directory whose names match the given glob pattern at the
+     * same time, see <code>PropertiesLoader</code>. Fails as soon as any of the files can't be
+     * loaded.
+     *
+     * @param dir the directory containing the files
+     * @param glob a glob pattern, like <code>*.properties</code>
+     * @return a map of paths and <code>Properties</code> objects, in the order of their names
+     * @throws IOException Thrown when any IO error occurs during loading
+     */
+    public static Map<Path, Properties> loadDirectory(Path dir, String glob) throws IOException {
+        return PropertiesLoader.create().loadDirectory(dir, glob).properties();
+    }
+
     /**
      * Returns a <code>Properties</code> with the contents read from the given stream. This includes
      * not only properties but also all whitespace and any comments that are encountered.
@@ -890,16 +2131,232 @@ public class Properties extends AbstractMap<String, String> {
     }
 
     /**
-     * Stores the contents of this object to the given file.
+     * Stores the contents of this object to the given file. When the contents were loaded from a
+     * memory-mapped file using lazy decoding, all parts that haven't been changed are copied
+     * directly from that file. When the given file is the one the contents were loaded from, the
+     * output is first written to a temporary file which then replaces the original file.
      *
      * @param file a path to the file to write
      * @param comment comment lines to be written at the start of the output
      * @throws IOException Thrown when any IO error occurs during operation
      */
     public void store(Path file, String... comment) throws IOException {
-        try (Writer bw = Files.newBufferedWriter(file, StandardOpenOption.TRUNCATE_EXISTING)) {
-            store(bw, comment);
+        store(file, StoreOptions.defaults(), comment);
+    }
+
+    /**
+     * Stores the contents of this object to the given file. Works like <code>store(file, comment)
+     * </code> but the given options determine how the file is written.
+     *
+     * @param file a path to the file to write
+     * @param options a <code>StoreOptions</code> object
+     * @param comment comment lines to be written at the start of the output
+     * @throws IOException Thrown when any IO error occurs during operation
+     */
+    public void store(Path file, StoreOptions options, String... comment) throws IOException {
+        boolean syncNow = options.sync() && options.syncDelay().isZero();
+        // Whether the file's contents still need to be forced to disk after writing
+        boolean forceContents = false;
+        if (options.atomic() || isSourceFile(file)) {
+            // A file we're still copying from can't be overwritten either
+            storeReplacing(file, options, comment);
+        } else {
+            try (FileChannel channel =
+                    FileChannel.open(
+                            file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                store(channel, StandardCharsets.UTF_8, comment);
+                if (syncNow) {
+                    channel.force(true);
+                } else {
+                    forceContents = true;
+                }
+            }
+        }
+        if (options.sync()) {
+            FileSyncer.sync(file, forceContents, options.syncDelay());
+        }
+    }
+
+    // Writes to a temporary file which then replaces the given file
+    private void storeReplacing(Path file, StoreOptions options, String... comment)
+            throws IOException {
+        String name = "." + file.getFileName() + "." + Long.toHexString(random.nextLong());
+        Path tmp = file.resolveSibling(name + ".tmp");
+        try {
+            try (FileChannel channel =
+                    FileChannel.open(
+                            tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                store(channel, StandardCharsets.UTF_8, comment);
+                if (options.sync()) {
+                    // Even when syncing is delayed the data must be on disk before the file
+                    // gets moved into place, otherwise a crash could leave an empty file
+                    // under the real name. That leaves only the directory for the delayed sync
+                    channel.force(true);
+                }
+            }
+            PosixFileAttributeView view =
+                    Files.getFileAttributeView(file, PosixFileAttributeView.class);
+            if (view != null && Files.exists(file)) {
+                Files.setPosixFilePermissions(tmp, view.readAttributes().permissions());
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                if (options.atomic()) {
+                    throw ex;
+                }
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static final Random random = new Random();
+
+    /**
+     * Stores the contents of this object to the file they were loaded from, writing only the parts
+     * of the file that have changed. This requires the contents to have been loaded from that file
+     * using memory-mapping and lazy decoding, and the file not to have been changed since. When
+     * values were only replaced by values of the same length, or when all changes are near the end
+     * of the file, only the bytes that changed get written. In all other cases this works exactly
+     * like <code>store(file)</code>.
+     *
+     * <p>NB: the file gets changed in place, so unlike with <code>store()</code> an error halfway
+     * can leave the file partially updated. Any other <code>Properties</code> object that lazily
+     * loaded the same file should not be used anymore afterwards.
+     *
+     * @param file a path to the file to write
+     * @throws IOException Thrown when any IO error occurs during operation
+     */
+    public void storeIncremental(Path file) throws IOException {
+        PropertiesParser.ByteSource source = lazySource(file);
+        if (source == null || !source.copyableTo(StandardCharsets.UTF_8)) {
+            store(file);
+            return;
+        }
+        // Find the tokens that stay where they are. All tokens before `tail`
+        // do, and only the new bytes among them have to be written. All tokens
+        // from `tail` onwards have to be written as a whole
+        List<Patch> patches = new ArrayList<>();
+        int tail = 0;
+        int tailStart = 0;
+        boolean moved = false;
+        int pos = 0;
+        int i = 0;
+        for (PropertiesParser.Token token : tokens) {
+            if (isFrom(token, source)) {
+                PropertiesParser.LazyToken lazy = (PropertiesParser.LazyToken) token;
+                if (!moved && lazy.start == pos) {
+                    tail = i + 1;
+                    tailStart = lazy.end;
+                } else {
+                    moved = true;
+                }
+                pos += lazy.end - lazy.start;
+            } else {
+                byte[] bytes = bytes(token);
+                if (!moved && !source.matches(pos, bytes)) {
+                    patches.add(new Patch(i, pos, bytes));
+                }
+                pos += bytes.length;
+            }
+            i++;
+        }
+        int length = pos;
+        if (length - tailStart > length / 2) {
+            // Too much would have to be written, so we just write the whole thing
+            store(file);
+            return;
+        }
+        // The tail might need bytes that are about to be overwritten,
+        // so we get all of it before anything gets written
+        byte[] tailBytes = new byte[length - tailStart];
+        List<Patch> moves = new ArrayList<>();
+        pos = tailStart;
+        for (ListIterator<PropertiesParser.Token> iter = tokens.listIterator(tail);
+                iter.hasNext(); ) {
+            PropertiesParser.Token token = iter.next();
+            if (isFrom(token, source)) {
+                PropertiesParser.LazyToken lazy = (PropertiesParser.LazyToken) token;
+                source.get(lazy.start, lazy.end, tailBytes, pos - tailStart);
+                moves.add(new Patch(iter.previousIndex(), pos, null));
+                pos += lazy.end - lazy.start;
+            } else {
+                byte[] bytes = bytes(token);
+                System.arraycopy(bytes, 0, tailBytes, pos - tailStart, bytes.length);
+                pos += bytes.length;
+            }
         }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            for (Patch patch : patches) {
+                if (patch.index < tail) {
+                    write(channel, ByteBuffer.wrap(patch.bytes), patch.start);
+                }
+            }
+            write(channel, ByteBuffer.wrap(tailBytes), tailStart);
+            channel.truncate(length);
+        }
+        // Make the tokens refer to their new positions in the file, when the
+        // size of the file changed they must also refer to a new mapping
+        PropertiesParser.ByteSource target =
+                length != source.limit() ? map(file, source.charset()) : source;
+        if (target != source) {
+            for (ListIterator<PropertiesParser.Token> iter = tokens.listIterator();
+                    iter.nextIndex() < tail; ) {
+                PropertiesParser.Token token = iter.next();
+                if (isFrom(token, source)) {
+                    PropertiesParser.LazyToken lazy = (PropertiesParser.LazyToken) token;
+                    lazy.moveTo(target, lazy.start);
+                }
+            }
+        }
+        for (Patch move : moves) {
+            ((PropertiesParser.LazyToken) tokens.get(move.index)).moveTo(target, move.start);
+        }
+    }
+
+    // New bytes to write at a certain position in a file for the token at the given index
+    private static class Patch {
+        final int index;
+        final int start;
+        final byte[] bytes;
+
+        Patch(int index, int start, byte[] bytes) {
+            this.index = index;
+            this.start = start;
+            this.bytes = bytes;
+        }
+    }
+
+    private static byte[] bytes(PropertiesParser.Token token) {
+        return token == PropertiesParser.Token.EOL
+                ? EOL_BYTES
+                : token.getRaw().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static final byte[] EOL_BYTES = {'\n'};
+
+    private static boolean isFrom(
+            PropertiesParser.Token token, PropertiesParser.ByteSource source) {
+        return token instanceof PropertiesParser.LazyToken
+                && ((PropertiesParser.LazyToken) token).source == source;
+    }
+
+    // Returns the source that holds the current contents of the given file, if any
+    private PropertiesParser.ByteSource lazySource(Path file) throws IOException {
+        Set<PropertiesParser.ByteSource> sources =
+                Collections.newSetFromMap(new IdentityHashMap<>());
+        for (PropertiesParser.Token token : tokens) {
+            if (token instanceof PropertiesParser.LazyToken
+                    && sources.add(((PropertiesParser.LazyToken) token).source)) {
+                PropertiesParser.ByteSource source = ((PropertiesParser.LazyToken) token).source;
+                if (source.isContentOf(file)) {
+                    return source;
+                }
+            }
+        }
+        return null;
     }
 
     /**
@@ -910,9 +2367,94 @@ public class Properties extends AbstractMap<String, String> {
      * @throws IOException Thrown when any IO error occurs during operation
      */
     public void store(OutputStream out, String... comment) throws IOException {
-        store(
-                new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.ISO_8859_1)),
-                comment);
+        store(Channels.newChannel(out), StandardCharsets.ISO_8859_1, comment);
+        out.flush();
+    }
+
+    /**
+     * Writes all tokens to the given channel. Tokens that haven't been changed since they were
+     * lazily loaded from a memory-mapped file, and that directly follow each other in that file,
+     * are written as a single range of bytes taken straight from the file. All other tokens get
+     * encoded using the given character set.
+     */
+    private void store(WritableByteChannel channel, Charset charset, String... comment)
+            throws IOException {
+        // Replace unmappable characters, just like an OutputStreamWriter would
+        CharsetEncoder encoder =
+                charset.newEncoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        Writer writer = Channels.newWriter(channel, encoder, -1);
+        Cursor pos = storeHeader(writer, comment);
+        // The range of unchanged bytes that still needs to be written
+        PropertiesParser.ByteSource source = null;
+        int start = 0;
+        int end = 0;
+        while (pos.hasToken()) {
+            PropertiesParser.Token token = pos.token();
+            if (source != null
+                    && token == PropertiesParser.Token.EOL
+                    && end < source.limit()
+                    && source.byteAt(end) == '\n') {
+                // Shared EOL tokens don't know their position, but
+                // if the next byte is an EOL we can simply include it
+                end++;
+            } else if (source != null
+                    && token instanceof PropertiesParser.LazyToken
+                    && ((PropertiesParser.LazyToken) token).source == source
+                    && ((PropertiesParser.LazyToken) token).start == end) {
+                end = ((PropertiesParser.LazyToken) token).end;
+            } else {
+                if (source != null) {
+                    writer.flush();
+                    write(channel, source.slice(start, end));
+                    source = null;
+                }
+                if (token instanceof PropertiesParser.LazyToken
+                        && ((PropertiesParser.LazyToken) token).source.copyableTo(charset)) {
+                    PropertiesParser.LazyToken lazy = (PropertiesParser.LazyToken) token;
+                    source = lazy.source;
+                    start = lazy.start;
+                    end = lazy.end;
+                } else {
+                    writer.write(token.getRaw());
+                }
+            }
+            pos.next();
+        }
+        writer.flush();
+        if (source != null) {
+            write(channel, source.slice(start, end));
+        }
+    }
+
+    private static void write(WritableByteChannel channel, ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    private static void write(FileChannel channel, ByteBuffer bytes, long position)
+            throws IOException {
+        while (bytes.hasRemaining()) {
+            position += channel.write(bytes, position);
+        }
+    }
+
+    // Determines if any of the tokens still refer to the given file
+    private boolean isSourceFile(Path file) throws IOException {
+        Set<PropertiesParser.ByteSource> sources =
+                Collections.newSetFromMap(new IdentityHashMap<>());
+        for (PropertiesParser.Token token : tokens) {
+            if (token instanceof PropertiesParser.LazyToken
+                    && sources.add(((PropertiesParser.LazyToken) token).source)) {
+                Path f = ((PropertiesParser.LazyToken) token).source.file();
+                if (f != null && Files.exists(file) && Files.isSameFile(f, file)) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
     /**
@@ -923,6 +2465,16 @@ public class Properties extends AbstractMap<String, String> {
      * @throws IOException Thrown when any IO error occurs during operation
      */
     public void store(Writer writer, String... comment) throws IOException {
+        Cursor pos = storeHeader(writer, comment);
+        while (pos.hasToken()) {
+            writer.write(pos.raw());
+            pos.next();
+        }
+        writer.flush();
+    }
+
+    // Writes the given comment lines and returns the position of the first token to write
+    private Cursor storeHeader(Writer writer, String... comment) throws IOException {
         Cursor pos = first();
         if (comment.length > 0) {
             pos = skipHeaderCommentLines();
@@ -936,11 +2488,7 @@ public class Properties extends AbstractMap<String, String> {
             // property
             writer.write(nl);
         }
-        while (pos.hasToken()) {
-            writer.write(pos.raw());
-            pos.next();
-        }
-        writer.flush();
+        return pos;
     }
 
     /**
@@ -956,9 +2504,9 @@ public class Properties extends AbstractMap<String, String> {
         boolean crlf = false;
         for (PropertiesParser.Token token : tokens) {
             if (token.isWs()) {
-                if (token.raw.endsWith("/r/n")) {
+                if (token.getRaw().endsWith("/r/n")) {
                     crlf = true;
-                } else if (token.raw.endsWith("/n")) {
+                } else if (token.getRaw().endsWith("/n")) {
                     lf = true;
                 }
             }
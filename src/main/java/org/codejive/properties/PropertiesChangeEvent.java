@@ -0,0 +1,84 @@
+package org.codejive.properties;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The changes made to a <code>Properties</code> object, as passed to a <code>
+ * PropertiesChangeListener</code>. When a property was changed more than once it is only reported
+ * once, with its value from before the first change and its value after the last one. Properties
+ * that ended up with the value they started with are not reported at all.
+ */
+public class PropertiesChangeEvent {
+    private final Properties source;
+    private final Map<String, PropertyChange> changes;
+    private final Set<String> comments;
+
+    PropertiesChangeEvent(Properties source) {
+        this.source = source;
+        changes = new LinkedHashMap<>();
+        comments = new LinkedHashSet<>();
+    }
+
+    // Adds a change, merging it with an earlier change of the same key
+    void change(String key, String oldValue, String newValue) {
+        PropertyChange earlier = changes.get(key);
+        if (earlier != null) {
+            oldValue = earlier.oldValue();
+        }
+        if (Objects.equals(oldValue, newValue)) {
+            changes.remove(key);
+        } else {
+            changes.put(key, new PropertyChange(oldValue, newValue));
+        }
+    }
+
+    void comment(String key) {
+        comments.add(key);
+    }
+
+    /**
+     * Returns the <code>Properties</code> object that was changed.
+     *
+     * @return a <code>Properties</code> object
+     */
+    public Properties source() {
+        return source;
+    }
+
+    /**
+     * Returns the properties whose values changed, in the order they were first changed.
+     *
+     * @return a map of keys and <code>PropertyChange</code> objects
+     */
+    public Map<String, PropertyChange> changes() {
+        return Collections.unmodifiableMap(changes);
+    }
+
+    /**
+     * Returns the keys of the properties whose comments were set, in the order they were first set.
+     *
+     * @return a set of keys
+     */
+    public Set<String> comments() {
+        return Collections.unmodifiableSet(comments);
+    }
+
+    /**
+     * Returns if there are no changes at all.
+     *
+     * @return <code>true</code> if nothing changed
+     */
+    public boolean isEmpty() {
+        return changes.isEmpty() && comments.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "PropertiesChangeEvent(changes=" + changes + ", comments=" + comments + ")";
+    }
+}
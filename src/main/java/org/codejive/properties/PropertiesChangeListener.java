@@ -0,0 +1,17 @@
+package org.codejive.properties;
+
+/**
+ * A listener that gets notified of the changes made to a <code>Properties</code> object, see <code>
+ * Properties.addChangeListener()</code>.
+ */
+@FunctionalInterface
+public interface PropertiesChangeListener {
+    /**
+     * Called after one or more properties were changed. All the changes made by a single operation,
+     * like <code>load()</code>, <code>clear()</code> or <code>applyBatch()</code>, or made during a
+     * call to <code>Properties.batch()</code>, are passed in a single event.
+     *
+     * @param event the changes that were made
+     */
+    void propertiesChanged(PropertiesChangeEvent event);
+}
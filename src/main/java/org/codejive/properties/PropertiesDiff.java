@@ -0,0 +1,128 @@
+package org.codejive.properties;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The differences between two <code>Properties</code> objects, as returned by <code>
+ * Properties.diff()</code>. Besides describing which properties were added, removed and changed, a
+ * diff can be applied to a <code>Properties</code> object to make the same changes to it, which
+ * only touches the properties that are actually different and leaves the rest of the formatting and
+ * comments intact.
+ */
+public class PropertiesDiff {
+    private final Map<String, String> added;
+    private final Map<String, String> removed;
+    private final Map<String, PropertyChange> changed;
+    private final Map<String, List<String>> comments;
+    // The raw keys and values of the added and changed properties, used when applying the diff
+    private final Map<String, String> rawKeys;
+    private final Map<String, String> rawValues;
+
+    PropertiesDiff(
+            Map<String, String> added,
+            Map<String, String> removed,
+            Map<String, PropertyChange> changed,
+            Map<String, List<String>> comments,
+            Map<String, String> rawKeys,
+            Map<String, String> rawValues) {
+        this.added = Collections.unmodifiableMap(added);
+        this.removed = Collections.unmodifiableMap(removed);
+        this.changed = Collections.unmodifiableMap(changed);
+        this.comments = Collections.unmodifiableMap(comments);
+        this.rawKeys = rawKeys;
+        this.rawValues = rawValues;
+    }
+
+    /**
+     * Returns the properties that only exist in the new properties, in the order they appear in
+     * there.
+     *
+     * @return a map of keys and their values
+     */
+    public Map<String, String> added() {
+        return added;
+    }
+
+    /**
+     * Returns the properties that only exist in the old properties, in the order they appear in
+     * there.
+     *
+     * @return a map of keys and their old values
+     */
+    public Map<String, String> removed() {
+        return removed;
+    }
+
+    /**
+     * Returns the properties that exist in both but have different values, in the order they appear
+     * in the old properties. Values that only differ in the way they are escaped are considered
+     * equal.
+     *
+     * @return a map of keys and <code>PropertyChange</code> objects
+     */
+    public Map<String, PropertyChange> changed() {
+        return changed;
+    }
+
+    /**
+     * Returns the comments of the properties whose comments are different in the new properties, as
+     * well as the comments of the added properties that have any. An empty list means the comment
+     * was removed.
+     *
+     * @return a map of keys and their new comment lines
+     */
+    public Map<String, List<String>> comments() {
+        return comments;
+    }
+
+    /**
+     * Returns if there are no differences at all.
+     *
+     * @return <code>true</code> if there are no differences
+     */
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && changed.isEmpty() && comments.isEmpty();
+    }
+
+    /**
+     * Makes the changes described by this diff to the given properties. Removed properties are
+     * removed, changed properties get their new value and added properties are added at the end,
+     * all using the raw keys and values from the new properties. Finally all the comments that
+     * changed are set, except those of properties the target doesn't have, which happens when it
+     * has diverged from the old properties. Nothing else in the target is changed.
+     *
+     * @param target the properties to change
+     */
+    public void applyTo(Properties target) {
+        if (!removed.isEmpty()) {
+            target.applyBatch(Collections.emptyMap(), removed.keySet());
+        }
+        for (String key : changed.keySet()) {
+            target.putRaw(rawKeys.get(key), rawValues.get(key));
+        }
+        for (String key : added.keySet()) {
+            target.putRaw(rawKeys.get(key), rawValues.get(key));
+        }
+        comments.forEach(
+                (key, comment) -> {
+                    if (target.containsKey(key)) {
+                        target.setComment(key, comment);
+                    }
+                });
+    }
+
+    @Override
+    public String toString() {
+        return "PropertiesDiff(added="
+                + added.keySet()
+                + ", removed="
+                + removed.keySet()
+                + ", changed="
+                + changed.keySet()
+                + ", comments="
+                + comments.keySet()
+                + ")";
+    }
+}
@@ -0,0 +1,46 @@
+package org.codejive.properties;
+
+/**
+ * Receives the parts of a properties file one at a time, as they are read by <code>
+ * PropertiesParser.parse()</code>. Together the raw values passed to the methods make up the exact
+ * contents of the file. All methods do nothing by default, so only the ones that are of interest
+ * have to be implemented.
+ */
+public interface PropertiesHandler {
+    /**
+     * Called for the key of a property.
+     *
+     * @param key the key with all escape sequences processed
+     * @param rawKey the key exactly as it appears in the input
+     */
+    default void onKey(String key, String rawKey) {}
+
+    /**
+     * Called for the separator between a key and its value, including any whitespace around it.
+     *
+     * @param separator the separator exactly as it appears in the input
+     */
+    default void onSeparator(String separator) {}
+
+    /**
+     * Called for the value of a property, always right after the key and the separator.
+     *
+     * @param value the value with all escape sequences processed
+     * @param rawValue the value exactly as it appears in the input
+     */
+    default void onValue(String value, String rawValue) {}
+
+    /**
+     * Called for a comment line, without its line ending.
+     *
+     * @param comment the comment, including the comment character it starts with
+     */
+    default void onComment(String comment) {}
+
+    /**
+     * Called for any whitespace between the other parts, each line ending is passed separately.
+     *
+     * @param whitespace the whitespace exactly as it appears in the input
+     */
+    default void onWhitespace(String whitespace) {}
+}
@@ -0,0 +1,313 @@
+package org.codejive.properties;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Loads many files at the same time, overlapping the reading and parsing of the files. By default
+ * each file gets loaded by its own virtual thread when running on Java 21 or later, and by a pool
+ * with a thread per available processor otherwise. The results are returned in the order the files
+ * were given in, together with the time it took to load each of them.
+ *
+ * <pre>
+ * PropertiesLoader.Result result = PropertiesLoader.create()
+ *         .withFailurePolicy(PropertiesLoader.FailurePolicy.COLLECT)
+ *         .loadDirectory(overrides, "*.properties");
+ * </pre>
+ *
+ * <p>Objects of this class are immutable, each of the <code>with...()</code> methods returns a new
+ * object.
+ */
+public class PropertiesLoader {
+    private final Executor executor;
+    private final LoadOptions options;
+    private final FailurePolicy failurePolicy;
+
+    private static final PropertiesLoader DEFAULTS =
+            new PropertiesLoader(null, LoadOptions.defaults(), FailurePolicy.FAIL_FAST);
+
+    /** Determines what happens when one of the files can't be loaded. */
+    public enum FailurePolicy {
+        /**
+         * Files that haven't started loading yet are skipped and the first error that occurred gets
+         * thrown, with any others added to it as suppressed exceptions.
+         */
+        FAIL_FAST,
+        /** All files get loaded and the errors are returned as part of the result. */
+        COLLECT
+    }
+
+    /** The outcome of loading a set of files. */
+    public static class Result {
+        private final Map<Path, Properties> properties;
+        private final Map<Path, IOException> failures;
+        private final Map<Path, Duration> timings;
+        private final Duration elapsed;
+
+        Result(
+                Map<Path, Properties> properties,
+                Map<Path, IOException> failures,
+                Map<Path, Duration> timings,
+                Duration elapsed) {
+            this.properties = Collections.unmodifiableMap(properties);
+            this.failures = Collections.unmodifiableMap(failures);
+            this.timings = Collections.unmodifiableMap(timings);
+            this.elapsed = elapsed;
+        }
+
+        /**
+         * Returns the properties of the files that were loaded, in the order the files were given.
+         *
+         * @return a map of paths and <code>Properties</code> objects
+         */
+        public Map<Path, Properties> properties() {
+            return properties;
+        }
+
+        /**
+         * Returns the errors of the files that couldn't be loaded, in the order the files were
+         * given.
+         *
+         * @return a map of paths and <code>IOException</code> objects
+         */
+        public Map<Path, IOException> failures() {
+            return failures;
+        }
+
+        /**
+         * Returns if any of the files couldn't be loaded.
+         *
+         * @return <code>true</code> if there were failures
+         */
+        public boolean hasFailures() {
+            return !failures.isEmpty();
+        }
+
+        /**
+         * Returns how long it took to load each of the files, including the ones that failed, in
+         * the order the files were given. Files that were skipped aren't included.
+         *
+         * @return a map of paths and durations
+         */
+        public Map<Path, Duration> timings() {
+            return timings;
+        }
+
+        /**
+         * Returns how long it took to load all the files.
+         *
+         * @return a <code>Duration</code>
+         */
+        public Duration elapsed() {
+            return elapsed;
+        }
+
+        @Override
+        public String toString() {
+            return "Result(loaded="
+                    + properties.size()
+                    + ", failed="
+                    + failures.size()
+                    + ", elapsed="
+                    + elapsed
+                    + ")";
+        }
+    }
+
+    private PropertiesLoader(Executor executor, LoadOptions options, FailurePolicy failurePolicy) {
+        this.executor = executor;
+        this.options = options;
+        this.failurePolicy = failurePolicy;
+    }
+
+    /**
+     * Returns a loader that uses the default executor and load options and that fails on the first
+     * error.
+     *
+     * @return a <code>PropertiesLoader</code> object
+     */
+    public static PropertiesLoader create() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Returns a copy of this loader that runs the loading of the files on the given executor. The
+     * executor doesn't get shut down by the loader.
+     *
+     * @param executor an <code>Executor</code> or <code>null</code> to use the default one
+     * @return a <code>PropertiesLoader</code> object
+     */
+    public PropertiesLoader withExecutor(Executor executor) {
+        return new PropertiesLoader(executor, options, failurePolicy);
+    }
+
+    /**
+     * Returns a copy of this loader that uses the given options to load each of the files.
+     *
+     * @param options a <code>LoadOptions</code> object
+     * @return a <code>PropertiesLoader</code> object
+     */
+    public PropertiesLoader withOptions(LoadOptions options) {
+        return new PropertiesLoader(executor, Objects.requireNonNull(options), failurePolicy);
+    }
+
+    /**
+     * Returns a copy of this loader that uses the given policy when files can't be loaded.
+     *
+     * @param failurePolicy a <code>FailurePolicy</code>
+     * @return a <code>PropertiesLoader</code> object
+     */
+    public PropertiesLoader withFailurePolicy(FailurePolicy failurePolicy) {
+        return new PropertiesLoader(executor, options, Objects.requireNonNull(failurePolicy));
+    }
+
+    /**
+     * Loads the files in the given directory whose names match the given glob pattern, in the order
+     * of their names. Sub directories are not searched.
+     *
+     * @param dir the directory containing the files
+     * @param glob a glob pattern, like <code>*.properties</code>
+     * @return a <code>Result</code> object
+     * @throws IOException Thrown when the directory can't be read or, when failing fast, when any
+     *     of the files can't be loaded
+     */
+    public Result loadDirectory(Path dir, String glob) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, glob)) {
+            for (Path file : ds) {
+                if (Files.isRegularFile(file)) {
+                    files.add(file);
+                }
+            }
+        }
+        Collections.sort(files);
+        return load(files);
+    }
+
+    /**
+     * Loads the given files.
+     *
+     * @param files the paths of the files to load
+     * @return a <code>Result</code> object
+     * @throws IOException Thrown, when failing fast, when any of the files can't be loaded
+     */
+    public Result load(Collection<Path> files) throws IOException {
+        long start = System.nanoTime();
+        Map<Path, Properties> loaded = new ConcurrentHashMap<>();
+        Map<Path, IOException> failed = new ConcurrentHashMap<>();
+        Map<Path, Duration> timed = new ConcurrentHashMap<>();
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicReference<IOException> failure = new AtomicReference<>();
+        ExecutorService owned = executor == null ? defaultExecutor() : null;
+        Executor exec = owned != null ? owned : executor;
+        try {
+            List<CompletableFuture<Void>> tasks = new ArrayList<>(files.size());
+            for (Path file : files) {
+                tasks.add(
+                        CompletableFuture.runAsync(
+                                () -> {
+                                    if (stop.get()) {
+                                        return;
+                                    }
+                                    long t = System.nanoTime();
+                                    try {
+                                        loaded.put(file, Properties.loadProperties(file, options));
+                                    } catch (IOException ex) {
+                                        fail(file, ex, failed, failure, stop);
+                                    } catch (UncheckedIOException ex) {
+                                        fail(file, ex.getCause(), failed, failure, stop);
+                                    } finally {
+                                        timed.put(file, Duration.ofNanos(System.nanoTime() - t));
+                                    }
+                                },
+                                exec));
+            }
+            CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Loading was interrupted");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                throw (Error) cause;
+            }
+        } finally {
+            if (owned != null) {
+                owned.shutdown();
+            }
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return new Result(
+                inOrder(files, loaded),
+                inOrder(files, failed),
+                inOrder(files, timed),
+                Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private void fail(
+            Path file,
+            IOException ex,
+            Map<Path, IOException> failed,
+            AtomicReference<IOException> failure,
+            AtomicBoolean stop) {
+        failed.put(file, ex);
+        if (failurePolicy == FailurePolicy.FAIL_FAST) {
+            stop.set(true);
+            if (!failure.compareAndSet(null, ex)) {
+                failure.get().addSuppressed(ex);
+            }
+        }
+    }
+
+    private static <T> Map<Path, T> inOrder(Collection<Path> files, Map<Path, T> map) {
+        Map<Path, T> result = new LinkedHashMap<>();
+        for (Path file : files) {
+            T value = map.get(file);
+            if (value != null) {
+                result.put(file, value);
+            }
+        }
+        return result;
+    }
+
+    private static ExecutorService defaultExecutor() {
+        try {
+            // Virtual threads are only available on Java 21 and later
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return Executors.newFixedThreadPool(
+                    Runtime.getRuntime().availableProcessors(),
+                    r -> {
+                        Thread t = new Thread(r, "properties-loader");
+                        t.setDaemon(true);
+                        return t;
+                    });
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.codejive.properties;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The result of a three-way merge, as returned by <code>Properties.merge()</code>. It contains the
+ * merged properties and the properties that were changed in conflicting ways by both sides. For
+ * those the merged properties contain the version of our side.
+ */
+public class PropertiesMerge {
+    private final Properties properties;
+    private final Map<String, Conflict> conflicts;
+
+    /**
+     * The values of a property that both sides changed in different ways. A <code>null</code> value
+     * means the property doesn't exist on that side. As a <code>PropertyChange</code> it describes
+     * the change made by our side, from the base value to our value.
+     */
+    public static class Conflict extends PropertyChange {
+        private final String theirValue;
+
+        Conflict(String baseValue, String ourValue, String theirValue) {
+            super(baseValue, ourValue);
+            this.theirValue = theirValue;
+        }
+
+        public String baseValue() {
+            return oldValue();
+        }
+
+        public String ourValue() {
+            return newValue();
+        }
+
+        public String theirValue() {
+            return theirValue;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return super.equals(o) && Objects.equals(theirValue, ((Conflict) o).theirValue);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * super.hashCode() + Objects.hashCode(theirValue);
+        }
+
+        @Override
+        public String toString() {
+            return "Conflict(base="
+                    + baseValue()
+                    + ", ours="
+                    + ourValue()
+                    + ", theirs="
+                    + theirValue
+                    + ")";
+        }
+    }
+
+    PropertiesMerge(Properties properties, Map<String, Conflict> conflicts) {
+        this.properties = properties;
+        this.conflicts = Collections.unmodifiableMap(conflicts);
+    }
+
+    /**
+     * Returns the merged properties.
+     *
+     * @return a new <code>Properties</code> object
+     */
+    public Properties properties() {
+        return properties;
+    }
+
+    /**
+     * Returns the properties that were changed in conflicting ways, first the ones that exist on
+     * our side, in the order they appear there, followed by the ones that we removed.
+     *
+     * @return a map of keys and <code>Conflict</code> objects
+     */
+    public Map<String, Conflict> conflicts() {
+        return conflicts;
+    }
+
+    /**
+     * Returns if there were any conflicts.
+     *
+     * @return <code>true</code> if there were conflicts
+     */
+    public boolean hasConflicts() {
+        return !conflicts.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "PropertiesMerge(conflicts=" + conflicts.keySet() + ")";
+    }
+}
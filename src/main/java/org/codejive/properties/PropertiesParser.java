@@ -1,13 +1,28 @@
 package org.codejive.properties;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 import java.util.Spliterators;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.Consumer;
-import java.util.function.Function;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -16,8 +31,13 @@ import java.util.stream.StreamSupport;
  * return a stream of tokens. These tokens will contain _all_ characters that were read from the
  * input which makes it possible to exactly recreate the original, including all whitespace and
  * comments.
+ *
+ * <p>The input is read in small parts and each token can be thrown away as soon as it has been
+ * handled, which means that inputs of any size can be processed using a constant amount of memory,
+ * either by pulling tokens using <code>nextToken()</code> or <code>tokens()</code>, or by having
+ * them pushed to a <code>PropertiesHandler</code> using <code>parse()</code>.
  */
-class PropertiesParser {
+public class PropertiesParser {
 
     /** The type of token. */
     public enum Type {
@@ -47,8 +67,9 @@ class PropertiesParser {
      */
     public static class Token {
         final Type type;
-        final String raw;
-        final String text;
+        // Only lazy tokens change these after construction
+        String raw;
+        String text;
 
         public static final Token EOL =
                 new PropertiesParser.Token(PropertiesParser.Type.WHITESPACE, "\n");
@@ -80,6 +101,15 @@ class PropertiesParser {
             this.text = text;
         }
 
+        /**
+         * Constructor for subclasses that provide their values themselves.
+         *
+         * @param type The token's type
+         */
+        Token(Type type) {
+            this.type = type;
+        }
+
         /**
          * Returns the token's type
          *
@@ -115,8 +145,7 @@ class PropertiesParser {
          * @return true if whitespace ending in EOL, false otherwise
          */
         public boolean isEol() {
-            int ch = raw.charAt(raw.length() - 1);
-            return type == Type.WHITESPACE && PropertiesParser.isEol(ch);
+            return type == Type.WHITESPACE && PropertiesParser.isEol(lastChar());
         }
 
         /**
@@ -125,8 +154,12 @@ class PropertiesParser {
          * @return true if whitespace NOT ending in EOL, false otherwise
          */
         public boolean isWs() {
-            int ch = raw.charAt(raw.length() - 1);
-            return type == Type.WHITESPACE && !PropertiesParser.isEol(ch);
+            return type == Type.WHITESPACE && !PropertiesParser.isEol(lastChar());
+        }
+
+        // Returns the last character of the raw value, only used for whitespace
+        int lastChar() {
+            return raw.charAt(raw.length() - 1);
         }
 
         @Override
@@ -144,7 +177,9 @@ class PropertiesParser {
 
         @Override
         public String toString() {
-            if (text == null) {
+            String raw = getRaw();
+            String text = getText();
+            if (raw.equals(text)) {
                 return "Token(" + type + ", '" + raw + "')";
             } else {
                 return "Token(" + type + ", '" + raw + "'" + ", '" + text + "')";
@@ -152,13 +187,273 @@ class PropertiesParser {
         }
     }
 
+    /**
+     * A token that only knows where it is located in the input. Its raw and text values are only
+     * created when they are asked for the first time, after which they are kept. Creating them more
+     * than once, when different threads ask for them at the same time, is harmless.
+     */
+    static class LazyToken extends Token {
+        // Only changed by moveTo()
+        ByteSource source;
+        int start;
+        int end;
+        private final boolean escapes;
+
+        LazyToken(Type type, ByteSource source, int start, int end, boolean escapes) {
+            super(type);
+            this.source = source;
+            this.start = start;
+            this.end = end;
+            this.escapes = escapes;
+        }
+
+        @Override
+        public String getRaw() {
+            String r = raw;
+            if (r == null) {
+                raw = r = source.string(start, end);
+            }
+            return r;
+        }
+
+        @Override
+        public String getText() {
+            if (!escapes) {
+                return getRaw();
+            }
+            String t = text;
+            if (t == null) {
+                text = t = unescape(getRaw());
+            }
+            return t;
+        }
+
+        @Override
+        int lastChar() {
+            // Whitespace only ever consists of single byte characters
+            return raw != null ? super.lastChar() : source.byteAt(end - 1);
+        }
+
+        /**
+         * Makes the token refer to the given position in the given source, which must contain the
+         * exact same bytes as its current position.
+         */
+        void moveTo(ByteSource source, int start) {
+            this.end = start + (end - this.start);
+            this.start = start;
+            this.source = source;
+        }
+    }
+
+    /**
+     * The bytes being parsed together with the means to decode any part of them. Lazy tokens keep a
+     * reference to this, which means the bytes are kept as long as any of those tokens exist.
+     */
+    static class ByteSource {
+        private final ByteBuffer bytes;
+        private final Charset charset;
+        private final Path file;
+        private final Object fileKey;
+        private final boolean latin1;
+
+        /**
+         * Creates a source for the given bytes. This only works for character sets where all the
+         * characters that have a special meaning in properties files are encoded as single ASCII
+         * bytes that never occur as part of any other character, see <code>supportsBytes()</code>.
+         *
+         * @param bytes a <code>ByteBuffer</code> holding the input
+         * @param charset the character set used to decode the bytes
+         * @param file the file the bytes were mapped from or <code>null</code>
+         * @throws IOException Thrown when the file's attributes can't be read
+         */
+        ByteSource(ByteBuffer bytes, Charset charset, Path file) throws IOException {
+            if (!supportsBytes(charset)) {
+                throw new IllegalArgumentException("Unsupported character set: " + charset);
+            }
+            this.bytes = bytes.duplicate();
+            this.charset = charset;
+            this.file = file;
+            fileKey = file != null ? fileKey(file) : null;
+            latin1 = charset.equals(StandardCharsets.ISO_8859_1);
+        }
+
+        int byteAt(int index) {
+            return bytes.get(index) & 0xff;
+        }
+
+        int limit() {
+            return bytes.limit();
+        }
+
+        Path file() {
+            return file;
+        }
+
+        Charset charset() {
+            return charset;
+        }
+
+        /**
+         * Determines if the bytes are still the exact contents of the given file. This can only be
+         * determined on systems that support file keys.
+         *
+         * @param f a path to a file
+         * @return <code>true</code> if the bytes were mapped from the file and the file is still
+         *     the same file with the same size
+         * @throws IOException Thrown when the file's attributes can't be read
+         */
+        boolean isContentOf(Path f) throws IOException {
+            return fileKey != null
+                    && Files.exists(f)
+                    && fileKey.equals(fileKey(f))
+                    && Files.size(f) == bytes.limit();
+        }
+
+        private static Object fileKey(Path f) throws IOException {
+            return Files.readAttributes(f, BasicFileAttributes.class).fileKey();
+        }
+
+        // Determines if the bytes at the given position are equal to the given bytes
+        boolean matches(int start, byte[] bs) {
+            if (start + bs.length > bytes.limit()) {
+                return false;
+            }
+            for (int i = 0; i < bs.length; i++) {
+                if (bytes.get(start + i) != bs[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Copies the bytes between the given positions into the array
+        void get(int start, int end, byte[] dst, int offset) {
+            slice(start, end).get(dst, offset, end - start);
+        }
+
+        /**
+         * Determines if the bytes can be copied as-is to an output that uses the given character
+         * set.
+         *
+         * @param target a character set
+         * @return <code>true</code> if the bytes are valid for the target character set
+         */
+        boolean copyableTo(Charset target) {
+            return charset.equals(target)
+                    || (charset.equals(StandardCharsets.US_ASCII)
+                            && (target.equals(StandardCharsets.UTF_8)
+                                    || target.equals(StandardCharsets.ISO_8859_1)));
+        }
+
+        /**
+         * Returns a buffer containing the bytes between the given positions. The bytes are not
+         * copied.
+         */
+        ByteBuffer slice(int start, int end) {
+            ByteBuffer b = bytes.duplicate();
+            // The casts are needed for compatibility with Java 8
+            ((Buffer) b).limit(end);
+            ((Buffer) b).position(start);
+            return b;
+        }
+
+        /**
+         * Decodes the bytes between the given positions. This can be called from any thread, but
+         * threads that decode a lot, like parsers, should use their own <code>Decoder</code>
+         * instead, because this method doesn't reuse any buffers or decoders.
+         *
+         * @throws CharacterCodingException if the bytes are not valid for the character set
+         */
+        String decode(int start, int end) throws CharacterCodingException {
+            int len = end - start;
+            byte[] bs = new byte[len];
+            get(start, end, bs, 0);
+            if (latin1 || isAscii(bs, len)) {
+                return new String(bs, 0, len, StandardCharsets.ISO_8859_1);
+            } else {
+                return charset.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPORT)
+                        .onUnmappableCharacter(CodingErrorAction.REPORT)
+                        .decode(ByteBuffer.wrap(bs))
+                        .toString();
+            }
+        }
+
+        /**
+         * Returns a new object for decoding parts of the bytes, which can be used at the same time
+         * as any other decoders of this source.
+         *
+         * @return a <code>Decoder</code> object
+         */
+        Decoder newDecoder() {
+            return new Decoder();
+        }
+
+        /** Decodes parts of the bytes, each object must only be used by one thread at a time. */
+        final class Decoder {
+            private final ByteBuffer view = bytes.duplicate();
+            private final CharsetDecoder decoder =
+                    charset.newDecoder()
+                            .onMalformedInput(CodingErrorAction.REPORT)
+                            .onUnmappableCharacter(CodingErrorAction.REPORT);
+            private byte[] scratch = new byte[BUFFER_SIZE];
+
+            /**
+             * Decodes the bytes between the given positions.
+             *
+             * @throws CharacterCodingException if the bytes are not valid for the character set
+             */
+            String decode(int start, int end) throws CharacterCodingException {
+                int len = end - start;
+                if (scratch.length < len) {
+                    scratch = new byte[len];
+                }
+                // The cast is needed for compatibility with Java 8
+                ((Buffer) view).position(start);
+                view.get(scratch, 0, len);
+                if (latin1 || isAscii(scratch, len)) {
+                    return new String(scratch, 0, len, StandardCharsets.ISO_8859_1);
+                } else {
+                    return decoder.decode(ByteBuffer.wrap(scratch, 0, len)).toString();
+                }
+            }
+        }
+
+        // Same as decode() but for use where no checked exceptions can be thrown
+        String string(int start, int end) {
+            try {
+                return decode(start, end);
+            } catch (CharacterCodingException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+
     private final Reader rdr;
 
     private Type state;
-    private int pch;
-    private StringBuilder str;
     private boolean hasEscapes;
 
+    // The window on the input. The characters of the token being read
+    // start at `start`, `pos` is the next character to read and `limit`
+    // is the end of the characters that have been read from the input
+    private char[] buf;
+    private int start;
+    private int pos;
+    private int limit;
+    private boolean eof;
+
+    // When parsing bytes instead of characters these will be set and
+    // `buf` will be null. All positions are then offsets in `bytes`
+    private final ByteBuffer bytes;
+    private final ByteSource source;
+    // This parser's own decoder, so parsers working on the same source don't wait for each other
+    private final ByteSource.Decoder decoder;
+    // Create lazy tokens instead of decoding each token right away
+    private final boolean lazy;
+
     /**
      * Constructor that takes a <code>Reader</code> for reading the input to parse.
      *
@@ -168,21 +463,213 @@ class PropertiesParser {
     public PropertiesParser(Reader rdr) throws IOException {
         this.rdr = rdr;
         state = null;
-        str = new StringBuilder();
-        readChar();
+        buf = new char[BUFFER_SIZE];
+        bytes = null;
+        source = null;
+        decoder = null;
+        lazy = false;
     }
 
     /**
-     * Returns a stream of tokens for the given input.
+     * Constructor that takes a <code>ByteSource</code> containing the entire input to parse. The
+     * bytes are tokenized directly, only the contents of the tokens themselves get decoded.
+     *
+     * <p>When <code>lazy</code> is set the tokens won't be decoded at all while parsing, instead
+     * each token only remembers its position in the input. Its value will be decoded when it gets
+     * used for the first time. This means the input must not change while the tokens are in use and
+     * that invalid input will cause an <code>UncheckedIOException</code> at that time instead of
+     * while parsing.
+     *
+     * @param source a <code>ByteSource</code> holding the input
+     * @param lazy determines if the tokens should be decoded lazily
+     */
+    PropertiesParser(ByteSource source, boolean lazy) {
+        this(source, 0, source.limit(), lazy);
+    }
+
+    /**
+     * Constructor that only parses the bytes between the given positions of the source. The
+     * positions of the tokens are still relative to the start of the source. The start position
+     * must be the start of a line that doesn't continue the line before it, see <code>
+     * lineStart()</code>.
+     *
+     * @param source a <code>ByteSource</code> holding the input
+     * @param start the position of the first byte to parse
+     * @param end the position right after the last byte to parse
+     * @param lazy determines if the tokens should be decoded lazily
+     */
+    PropertiesParser(ByteSource source, int start, int end, boolean lazy) {
+        this.rdr = null;
+        this.bytes = source.slice(start, end);
+        this.source = source;
+        this.decoder = source.newDecoder();
+        this.lazy = lazy;
+        state = null;
+        pos = bytes.position();
+        limit = bytes.limit();
+        eof = true;
+    }
+
+    /**
+     * Determines if the given character set can be parsed at the byte level.
+     *
+     * @param charset a character set
+     * @return <code>true</code> if the character set is ISO-8859-1, US-ASCII or UTF-8
+     */
+    static boolean supportsBytes(Charset charset) {
+        return charset.equals(StandardCharsets.ISO_8859_1)
+                || charset.equals(StandardCharsets.US_ASCII)
+                || charset.equals(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns a stream of tokens for the given input. Any IO error that occurs while the stream is
+     * being consumed is thrown as an <code>UncheckedIOException</code>.
      *
      * @param rdr a <code>Reader</code> object
      * @return a <code>Stream</code> of <code>Token</code>
      * @throws IOException Thrown when any IO error occurs during parsing
      */
     public static Stream<Token> tokens(Reader rdr) throws IOException {
+        return tokens(new PropertiesParser(rdr));
+    }
+
+    /**
+     * Returns a stream of tokens for the given input.
+     *
+     * @param source a <code>ByteSource</code> holding the input
+     * @param lazy determines if the tokens should be decoded lazily
+     * @return a <code>Stream</code> of <code>Token</code>
+     */
+    static Stream<Token> tokens(ByteSource source, boolean lazy) {
+        return tokens(new PropertiesParser(source, lazy));
+    }
+
+    /**
+     * Returns all the tokens for the given input, which is split into parts that get parsed at the
+     * same time by the given number of threads. The result is exactly the same as when parsing the
+     * input in one go.
+     *
+     * @param source a <code>ByteSource</code> holding the input
+     * @param lazy determines if the tokens should be decoded lazily
+     * @param parallelism the number of threads to use
+     * @return a list of <code>Token</code>
+     * @throws IOException Thrown when any IO error occurs during parsing
+     */
+    static List<Token> tokens(ByteSource source, boolean lazy, int parallelism) throws IOException {
+        int limit = source.limit();
+        // Using more parts than threads evens out the differences between the parts
+        int parts = (int) Math.min(parallelism * 4L, Math.max(1, limit / MIN_PART_SIZE));
+        List<int[]> ranges = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i <= parts && start < limit; i++) {
+            int end = i == parts ? limit : lineStart(source, (int) ((long) limit * i / parts));
+            if (end > start) {
+                ranges.add(new int[] {start, end});
+                start = end;
+            }
+        }
+        if (ranges.size() <= 1) {
+            return parse(source, 0, limit, lazy);
+        }
+        // Only when the common pool has a different number of threads do we need a pool of our own
+        ForkJoinPool common = ForkJoinPool.commonPool();
+        ForkJoinPool pool =
+                common.getParallelism() == parallelism ? common : new ForkJoinPool(parallelism);
+        try {
+            List<ForkJoinTask<List<Token>>> tasks = new ArrayList<>(ranges.size());
+            for (int[] range : ranges) {
+                tasks.add(pool.submit(() -> parse(source, range[0], range[1], lazy)));
+            }
+            List<List<Token>> results = new ArrayList<>(tasks.size());
+            int size = 0;
+            for (ForkJoinTask<List<Token>> task : tasks) {
+                List<Token> ts = task.get();
+                results.add(ts);
+                size += ts.size();
+            }
+            List<Token> result = new ArrayList<>(size);
+            results.forEach(result::addAll);
+            return result;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Parsing was interrupted");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                throw (Error) cause;
+            }
+        } finally {
+            if (pool != common) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private static final int MIN_PART_SIZE = 256 * 1024;
+
+    private static List<Token> parse(ByteSource source, int start, int end, boolean lazy)
+            throws IOException {
+        PropertiesParser p = new PropertiesParser(source, start, end, lazy);
+        List<Token> result = new ArrayList<>();
+        Token token;
+        while ((token = p.nextToken()) != null) {
+            if (!lazy && token.type == Type.KEY) {
+                // Strings cache their hash, this saves the thread building the maps some work
+                token.getText().hashCode();
+            }
+            result.add(token);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the position of the first line at or after the given position that doesn't continue
+     * the line before it, or the end of the input if there is no such line. Any line, comment lines
+     * included, that ends in an odd number of backslashes continues on the next line, so the line
+     * following one that ends in an even number of backslashes is always a safe place to start
+     * parsing.
+     *
+     * @param source a <code>ByteSource</code> holding the input
+     * @param from the position to start looking from
+     * @return a position in the input
+     */
+    static int lineStart(ByteSource source, int from) {
+        int limit = source.limit();
+        int p = from;
+        while (p < limit) {
+            int ch = source.byteAt(p);
+            if (isEol(ch)) {
+                // The line ends at the first character of its line ending
+                int eol = ch == '\n' && p > 0 && source.byteAt(p - 1) == '\r' ? p - 1 : p;
+                int next = p + 1;
+                if (ch == '\r' && next < limit && source.byteAt(next) == '\n') {
+                    next++;
+                }
+                int backslashes = 0;
+                while (eol - backslashes > 0 && source.byteAt(eol - backslashes - 1) == '\\') {
+                    backslashes++;
+                }
+                if (backslashes % 2 == 0) {
+                    return next;
+                }
+                p = next;
+            } else {
+                p++;
+            }
+        }
+        return limit;
+    }
+
+    private static Stream<Token> tokens(PropertiesParser p) {
         return StreamSupport.stream(
                 new Spliterators.AbstractSpliterator<Token>(0, 0) {
-                    final PropertiesParser p = new PropertiesParser(rdr);
 
                     @Override
                     public boolean tryAdvance(Consumer<? super Token> action) {
@@ -195,13 +682,58 @@ class PropertiesParser {
                                 return false;
                             }
                         } catch (IOException ex) {
-                            throw new RuntimeException(ex);
+                            throw new UncheckedIOException(ex);
                         }
                     }
                 },
                 false);
     }
 
+    /**
+     * Parses the given input, passing each token to the matching method of the given handler.
+     *
+     * @param rdr a <code>Reader</code> object
+     * @param handler the <code>PropertiesHandler</code> receiving the tokens
+     * @throws IOException Thrown when any IO error occurs during parsing
+     */
+    public static void parse(Reader rdr, PropertiesHandler handler) throws IOException {
+        PropertiesParser p = new PropertiesParser(rdr);
+        Token token;
+        while ((token = p.nextToken()) != null) {
+            switch (token.type) {
+                case KEY:
+                    handler.onKey(token.getText(), token.getRaw());
+                    break;
+                case SEPARATOR:
+                    handler.onSeparator(token.getRaw());
+                    break;
+                case VALUE:
+                    handler.onValue(token.getText(), token.getRaw());
+                    break;
+                case COMMENT:
+                    handler.onComment(token.getRaw());
+                    break;
+                default:
+                    handler.onWhitespace(token.getRaw());
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Parses the given file, which is read as UTF-8, passing each token to the matching method of
+     * the given handler.
+     *
+     * @param file a path to the file to parse
+     * @param handler the <code>PropertiesHandler</code> receiving the tokens
+     * @throws IOException Thrown when any IO error occurs during parsing
+     */
+    public static void parse(Path file, PropertiesHandler handler) throws IOException {
+        try (Reader rdr = Files.newBufferedReader(file)) {
+            parse(rdr, handler);
+        }
+    }
+
     /**
      * Returns the next token in the input or <code>null</code> if the end of the input was reached.
      *
@@ -209,98 +741,194 @@ class PropertiesParser {
      * @throws IOException Thrown when any IO error occurs during parsing
      */
     public Token nextToken() throws IOException {
+        start = pos;
         int ch = peekChar();
         if (isEof(ch)) {
             return null;
         }
-        Function<Integer, Boolean> isValid = (c) -> false;
         Type nextState = null;
         if (state == null) {
             if (isCommentChar(ch)) {
                 state = Type.COMMENT;
-                isValid = (c) -> !isEol(c) && !isEof(c);
             } else if (isWhitespaceEolChar(ch)) {
                 state = Type.WHITESPACE;
-                final AtomicInteger oldc = new AtomicInteger(-1);
-                isValid = (c) -> isWhitespaceEolChar(c) && !isEol(oldc.getAndSet(c));
             } else {
                 state = Type.KEY;
-                isValid =
-                        (c) ->
-                                !isSeparatorChar(c)
-                                        && !isWhitespaceChar(c)
-                                        && !isEol(c)
-                                        && !isEof(c);
                 nextState = Type.SEPARATOR;
             }
         } else if (state == Type.SEPARATOR) {
-            final AtomicBoolean once = new AtomicBoolean(true);
-            isValid = (c) -> isWhitespaceChar(c) || (isSeparatorChar(c) && once.getAndSet(false));
             nextState = Type.VALUE;
-        } else if (state == Type.VALUE) {
-            isValid = (c) -> !isEol(c) && !isEof(c);
         }
+        switch (state) {
+            case KEY:
+                scanUntil(SEPARATOR | WHITESPACE | EOL);
+                break;
+            case SEPARATOR:
+                readSeparator();
+                break;
+            case WHITESPACE:
+                readWhitespace();
+                break;
+            default:
+                // COMMENT and VALUE both run until the end of the line
+                scanUntil(EOL);
+                break;
+        }
+        Token token;
+        if (state == Type.WHITESPACE && pos - start == 1 && charAt(start) == '\n') {
+            // By far the most common token, so we use the shared instance
+            token = Token.EOL;
+        } else if (lazy) {
+            token = new LazyToken(state, source, start, pos, hasEscapes);
+        } else {
+            String text = text(start, pos);
+            token = hasEscapes ? new Token(state, text, unescape(text)) : new Token(state, text);
+        }
+        hasEscapes = false;
+        state = nextState;
+        return token;
+    }
+
+    /**
+     * Skips characters until one is found that belongs to any of the given character classes or
+     * until the end of the input. Escape sequences are skipped as a whole, so the characters they
+     * contain never stop the scan.
+     */
+    private void scanUntil(int classes) throws IOException {
+        int stop = classes | ESCAPE;
         while (true) {
-            if (isValid.apply(ch)) {
-                addChar(readChar());
-                ch = peekChar();
+            int p = pos;
+            int l = limit;
+            if (bytes != null) {
+                ByteBuffer b = bytes;
+                while (p < l && (charClass(b.get(p)) & stop) == 0) {
+                    p++;
+                }
             } else {
-                String text = string();
-                Token token =
-                        hasEscapes
-                                ? new Token(state, text, unescape(text))
-                                : new Token(state, text);
-                hasEscapes = false;
-                state = nextState;
-                return token;
+                char[] b = buf;
+                while (p < l && (charClass(b[p]) & stop) == 0) {
+                    p++;
+                }
+            }
+            pos = p;
+            if (p < l) {
+                if (charAt(p) != '\\') {
+                    return;
+                }
+                readEscape();
+            } else if (!fill()) {
+                return;
             }
         }
     }
 
-    private int peekChar() {
-        return pch;
+    // Reads any whitespace and at most a single separator character
+    private void readSeparator() throws IOException {
+        boolean seenSeparator = false;
+        while (true) {
+            int ch = peekChar();
+            if (isWhitespaceChar(ch)) {
+                pos++;
+            } else if (isSeparatorChar(ch) && !seenSeparator) {
+                seenSeparator = true;
+                pos++;
+            } else {
+                break;
+            }
+        }
     }
 
-    private int readChar() throws IOException {
-        int ch = pch;
-        pch = rdr.read();
-        return ch;
+    // Reads whitespace up to and including the first EOL (if any)
+    private void readWhitespace() throws IOException {
+        int ch = peekChar();
+        while (isWhitespaceEolChar(ch)) {
+            pos++;
+            if (isEol(ch)) {
+                readCrLf(ch);
+                break;
+            }
+            ch = peekChar();
+        }
     }
 
-    private void addChar(int ch) throws IOException {
-        str.append((char) ch);
-        if (ch == '\\') {
-            hasEscapes = true;
-            int ch2 = readChar();
-            str.append((char) ch2);
-            if (ch2 == 'u') {
-                for (int i = 0; i < 4; i++) {
-                    int chu = readChar();
-                    if (!isHexDigitChar(chu)) {
-                        throw new IOException("Invalid unicode escape character: " + chu);
-                    }
-                    str.append((char) chu);
+    // Reads an escape sequence, the current character must be a backslash
+    private void readEscape() throws IOException {
+        hasEscapes = true;
+        pos++;
+        int ch = peekChar();
+        if (isEof(ch)) {
+            return;
+        }
+        pos++;
+        if (ch == 'u') {
+            for (int i = 0; i < 4; i++) {
+                int chu = peekChar();
+                if (!isHexDigitChar(chu)) {
+                    throw new IOException("Invalid unicode escape character: " + chu);
                 }
-            } else {
-                readEol(ch2);
+                pos++;
             }
         } else {
-            readEol(ch);
+            readCrLf(ch);
+        }
+    }
+
+    // Reads the LF of a CRLF pair if the given character was a CR
+    private void readCrLf(int ch) throws IOException {
+        if (ch == '\r' && peekChar() == '\n') {
+            pos++;
+        }
+    }
+
+    private int peekChar() throws IOException {
+        return pos < limit || fill() ? charAt(pos) : -1;
+    }
+
+    private int charAt(int p) {
+        return bytes != null ? bytes.get(p) & 0xff : buf[p];
+    }
+
+    private String text(int start, int end) throws IOException {
+        if (bytes == null) {
+            return new String(buf, start, end - start);
         }
+        return decoder.decode(start, end);
     }
 
-    private void readEol(int ch) throws IOException {
-        if (ch == '\r') {
-            if (peekChar() == '\n') {
-                str.append((char) readChar());
+    private static boolean isAscii(byte[] bs, int len) {
+        for (int i = 0; i < len; i++) {
+            if (bs[i] < 0) {
+                return false;
             }
         }
+        return true;
     }
 
-    private String string() {
-        String result = str.toString();
-        str.setLength(0);
-        return result;
+    /**
+     * Reads more input into the buffer while keeping the characters of the current token. The
+     * buffer is only made larger when a single token doesn't fit.
+     *
+     * @return <code>false</code> if the end of the input was reached
+     */
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        if (start > 0) {
+            System.arraycopy(buf, start, buf, 0, limit - start);
+            limit -= start;
+            pos -= start;
+            start = 0;
+        } else if (limit == buf.length) {
+            buf = Arrays.copyOf(buf, buf.length * 2);
+        }
+        int n = rdr.read(buf, limit, buf.length - limit);
+        if (n < 0) {
+            eof = true;
+            return false;
+        }
+        limit += n;
+        return pos < limit || fill();
     }
 
     /**
@@ -315,6 +943,10 @@ class PropertiesParser {
         for (int i = 0; i < escape.length(); i++) {
             char ch = escape.charAt(i);
             if (ch == '\\') {
+                if (i == escape.length() - 1) {
+                    // A backslash at the very end of the input is ignored
+                    break;
+                }
                 ch = escape.charAt(++i);
                 switch (ch) {
                     case 't':
@@ -358,6 +990,33 @@ class PropertiesParser {
         return txt.toString();
     }
 
+    private static final int SEPARATOR = 1;
+    private static final int WHITESPACE = 2;
+    private static final int EOL = 4;
+    private static final int ESCAPE = 8;
+
+    private static final byte[] CHAR_CLASSES = new byte[128];
+
+    static {
+        CHAR_CLASSES['='] = SEPARATOR;
+        CHAR_CLASSES[':'] = SEPARATOR;
+        CHAR_CLASSES[' '] = WHITESPACE;
+        CHAR_CLASSES['\t'] = WHITESPACE;
+        CHAR_CLASSES['\f'] = WHITESPACE;
+        CHAR_CLASSES['\n'] = EOL;
+        CHAR_CLASSES['\r'] = EOL;
+        CHAR_CLASSES['\\'] = ESCAPE;
+    }
+
+    private static int charClass(char ch) {
+        return ch < CHAR_CLASSES.length ? CHAR_CLASSES[ch] : 0;
+    }
+
+    private static int charClass(byte b) {
+        // Bytes with their high bit set are never part of a special character
+        return b >= 0 ? CHAR_CLASSES[b] : 0;
+    }
+
     private static boolean isSeparatorChar(int ch) {
         return ch == '=' || ch == ':';
     }
@@ -0,0 +1,247 @@
+package org.codejive.properties;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * A pipeline of changes that can be made to the properties of a file while it gets copied, without
+ * ever loading the whole file. The input is parsed one line at a time, each property is passed
+ * through the steps of the pipeline, in the order they were added, and the result is written to the
+ * output right away. Everything that isn't changed by any of the steps is written exactly as it was
+ * read. Only the comment lines directly before a property are kept in memory until the property
+ * itself has been read, so the memory used doesn't depend on the size of the input.
+ *
+ * <pre>
+ * PropertiesTransformer.create()
+ *         .filter((key, value) -&gt; !key.startsWith("tmp."))
+ *         .mapValues((key, value) -&gt; key.endsWith(".password") ? "********" : value)
+ *         .transform(in, out);
+ * </pre>
+ *
+ * <p>Objects of this class are immutable, each of the methods that adds a step returns a new
+ * object.
+ */
+public class PropertiesTransformer {
+    private final List<Step> steps;
+
+    private static final PropertiesTransformer EMPTY =
+            new PropertiesTransformer(Collections.emptyList());
+
+    // A step of the pipeline, returns false if the property should be removed
+    private interface Step {
+        boolean apply(Item item);
+    }
+
+    // The property that is passing through the pipeline
+    private static class Item {
+        String key;
+        String value;
+        // The comment lines that replace the existing ones, if any
+        List<String> comment;
+    }
+
+    private PropertiesTransformer(List<Step> steps) {
+        this.steps = steps;
+    }
+
+    /**
+     * Returns a transformer without any steps, which copies its input unchanged.
+     *
+     * @return a <code>PropertiesTransformer</code> object
+     */
+    public static PropertiesTransformer create() {
+        return EMPTY;
+    }
+
+    private PropertiesTransformer with(Step step) {
+        List<Step> ss = new ArrayList<>(steps);
+        ss.add(step);
+        return new PropertiesTransformer(Collections.unmodifiableList(ss));
+    }
+
+    /**
+     * Adds a step that removes the properties that don't match the given predicate, together with
+     * their comments.
+     *
+     * @param keep a predicate taking a key and value that returns <code>true</code> for the
+     *     properties to keep
+     * @return a new <code>PropertiesTransformer</code> object
+     */
+    public PropertiesTransformer filter(BiPredicate<String, String> keep) {
+        return with(item -> keep.test(item.key, item.value));
+    }
+
+    /**
+     * Adds a step that replaces the values of the properties by the result of the given function.
+     * Values that are returned unchanged are written exactly as they were read. When the function
+     * returns <code>null</code> the property is removed, together with its comments.
+     *
+     * @param mapper a function taking a key and value that returns the new value
+     * @return a new <code>PropertiesTransformer</code> object
+     */
+    public PropertiesTransformer mapValues(BiFunction<String, String, String> mapper) {
+        return with(
+                item -> {
+                    item.value = mapper.apply(item.key, item.value);
+                    return item.value != null;
+                });
+    }
+
+    /**
+     * Adds a step that renames the keys of the properties using the given function. Keys that are
+     * returned unchanged are written exactly as they were read. When the function returns <code>
+     * null</code> the property is removed, together with its comments.
+     *
+     * @param renamer a function taking a key that returns the new key
+     * @return a new <code>PropertiesTransformer</code> object
+     */
+    public PropertiesTransformer renameKeys(Function<String, String> renamer) {
+        return with(
+                item -> {
+                    item.key = renamer.apply(item.key);
+                    return item.key != null;
+                });
+    }
+
+    /**
+     * Adds a step that sets the comments of the properties to the lines returned by the given
+     * function, replacing any existing comment lines. When the function returns <code>null</code>
+     * the comment is left as it is, an empty list removes it. Lines that don't start with one of
+     * the comment symbols <code>#</code> or <code>!</code> get <code># </code> put in front of
+     * them.
+     *
+     * @param commenter a function taking a key and value that returns the comment lines
+     * @return a new <code>PropertiesTransformer</code> object
+     */
+    public PropertiesTransformer comment(BiFunction<String, String, List<String>> commenter) {
+        return with(
+                item -> {
+                    List<String> comment = commenter.apply(item.key, item.value);
+                    if (comment != null) {
+                        item.comment = comment;
+                    }
+                    return true;
+                });
+    }
+
+    /**
+     * Reads the properties from the given file, passes them through the pipeline and writes the
+     * result to the other file. Both files use UTF-8. The files must not be the same, because the
+     * output is written while the input is still being read.
+     *
+     * @param in a path to the file to read
+     * @param out a path to the file to write
+     * @throws IOException Thrown when any IO error occurs
+     * @throws IllegalArgumentException Thrown when both paths refer to the same file
+     */
+    public void transform(Path in, Path out) throws IOException {
+        if (Files.exists(out) && Files.isSameFile(in, out)) {
+            throw new IllegalArgumentException("Input and output are the same file: " + out);
+        }
+        try (Reader rdr = Files.newBufferedReader(in);
+                Writer wrt = Files.newBufferedWriter(out)) {
+            transform(rdr, wrt);
+        }
+    }
+
+    /**
+     * Reads the properties from the given reader, passes them through the pipeline and writes the
+     * result to the given writer. The writer is not flushed or closed.
+     *
+     * @param in a <code>Reader</code> object
+     * @param out a <code>Writer</code> object
+     * @throws IOException Thrown when any IO error occurs
+     */
+    public void transform(Reader in, Writer out) throws IOException {
+        PropertiesParser parser = new PropertiesParser(in);
+        // The comment lines seen since the last line that wasn't a comment
+        List<PropertiesParser.Token> comments = new ArrayList<>();
+        List<PropertiesParser.Token> line = new ArrayList<>();
+        PropertiesParser.Token token;
+        while ((token = parser.nextToken()) != null) {
+            line.add(token);
+            if (token.isEol()) {
+                handleLine(line, comments, out);
+                line.clear();
+            }
+        }
+        if (!line.isEmpty()) {
+            handleLine(line, comments, out);
+        }
+        write(comments, out);
+    }
+
+    private void handleLine(
+            List<PropertiesParser.Token> line, List<PropertiesParser.Token> comments, Writer out)
+            throws IOException {
+        int i = line.get(0).isWs() ? 1 : 0;
+        PropertiesParser.Type type = i < line.size() ? line.get(i).getType() : null;
+        if (type == PropertiesParser.Type.COMMENT) {
+            // It might belong to a property, we'll know once we get there
+            comments.addAll(line);
+        } else if (type == PropertiesParser.Type.KEY && i + 2 < line.size()) {
+            handleProperty(line, i, comments, out);
+            comments.clear();
+        } else {
+            write(comments, out);
+            comments.clear();
+            write(line, out);
+        }
+    }
+
+    private void handleProperty(
+            List<PropertiesParser.Token> line,
+            int keyPos,
+            List<PropertiesParser.Token> comments,
+            Writer out)
+            throws IOException {
+        PropertiesParser.Token keyToken = line.get(keyPos);
+        PropertiesParser.Token valueToken = line.get(keyPos + 2);
+        Item item = new Item();
+        item.key = keyToken.getText();
+        item.value = valueToken.getText();
+        for (Step step : steps) {
+            if (!step.apply(item)) {
+                return;
+            }
+        }
+        if (item.comment != null) {
+            PropertiesParser.Token eol = line.get(line.size() - 1);
+            String newline = eol.isEol() ? eol.getRaw() : "\n";
+            for (String c : item.comment) {
+                if (!c.startsWith("#") && !c.startsWith("!")) {
+                    out.write("# ");
+                }
+                out.write(c);
+                out.write(newline);
+            }
+        } else {
+            write(comments, out);
+        }
+        for (int i = 0; i < line.size(); i++) {
+            PropertiesParser.Token t = line.get(i);
+            if (i == keyPos && !item.key.equals(keyToken.getText())) {
+                out.write(Properties.escapeKey(item.key));
+            } else if (i == keyPos + 2 && !item.value.equals(valueToken.getText())) {
+                out.write(Properties.escapeValue(item.value));
+            } else {
+                out.write(t.getRaw());
+            }
+        }
+    }
+
+    private static void write(List<PropertiesParser.Token> tokens, Writer out) throws IOException {
+        for (PropertiesParser.Token t : tokens) {
+            out.write(t.getRaw());
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package org.codejive.properties;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.Executor;
+
+/**
+ * Watches a file and reloads a <code>Properties</code> object whenever the file changes, using
+ * <code>Properties.reload()</code> so only the lines that changed get parsed again. Listeners added
+ * to the properties get notified of the properties whose values changed. The watching is done by a
+ * daemon thread, which keeps running until <code>close()</code> gets called.
+ *
+ * <pre>
+ * props.addChangeListener(e -&gt; refresh(e.changes().keySet()));
+ * try (PropertiesWatcher watcher = PropertiesWatcher.watch(props, file)) {
+ *     ...
+ * }
+ * </pre>
+ *
+ * <p>Because <code>Properties</code> objects are not thread-safe the reloading is done while
+ * holding the lock of the properties object, so other threads that use it should synchronize on it
+ * as well. Alternatively an <code>Executor</code> can be passed that will run the reloads, for
+ * example on the thread that owns the properties.
+ *
+ * <p>The file gets reloaded as soon as a change is reported, without waiting for the writer to
+ * finish. A file that is read while it is only partly written usually still parses, so the
+ * properties briefly reflect whatever was written so far, until the next change gets reported and
+ * the file is reloaded again. Watched files should therefore be replaced atomically, for example by
+ * storing them with <code>StoreOptions.withAtomicReplace(true)</code> or by moving a complete file
+ * into place, instead of being overwritten directly.
+ */
+public class PropertiesWatcher implements Closeable {
+    private final Properties props;
+    private final Path file;
+    private final Charset charset;
+    private final Executor executor;
+    private final WatchService watchService;
+    private volatile IOException lastFailure;
+
+    private PropertiesWatcher(Properties props, Path file, Charset charset, Executor executor)
+            throws IOException {
+        this.props = props;
+        this.file = file.toAbsolutePath().normalize();
+        this.charset = charset;
+        this.executor = executor;
+        Path dir = this.file.getParent();
+        watchService = FileSystems.getDefault().newWatchService();
+        try {
+            // Files can only be watched through the directory that contains them
+            dir.register(
+                    watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException ex) {
+            watchService.close();
+            throw ex;
+        }
+        Thread thread = new Thread(this::watch, "properties-watcher-" + this.file.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Starts watching the given file, which is read as UTF-8, reloading the given properties on the
+     * watcher's own thread whenever the file changes.
+     *
+     * @param props the properties to reload
+     * @param file the file to watch
+     * @return a <code>PropertiesWatcher</code> object
+     * @throws IOException Thrown when the file's directory can't be watched
+     */
+    public static PropertiesWatcher watch(Properties props, Path file) throws IOException {
+        return watch(props, file, StandardCharsets.UTF_8, null);
+    }
+
+    /**
+     * Starts watching the given file, reloading the given properties whenever the file changes.
+     *
+     * @param props the properties to reload
+     * @param file the file to watch
+     * @param charset the character set used to decode the file
+     * @param executor the executor that runs the reloads or <code>null</code> to run them on the
+     *     watcher's own thread
+     * @return a <code>PropertiesWatcher</code> object
+     * @throws IOException Thrown when the file's directory can't be watched
+     */
+    public static PropertiesWatcher watch(
+            Properties props, Path file, Charset charset, Executor executor) throws IOException {
+        return new PropertiesWatcher(props, file, charset, executor);
+    }
+
+    /**
+     * Returns the error that occurred during the last reload, if it failed. Reloads fail for
+     * example when the file gets removed or contains invalid escapes or characters, in which case
+     * the properties stay as they were until the next change. A file that is read while only partly
+     * written doesn't necessarily cause a failure, see the class documentation.
+     *
+     * @return an <code>IOException</code> or <code>null</code> if the last reload succeeded
+     */
+    public IOException lastFailure() {
+        return lastFailure;
+    }
+
+    /** Stops watching the file. */
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    // An overflow means events were lost, which might include ours
+                    changed |=
+                            event.kind() == StandardWatchEventKinds.OVERFLOW
+                                    || file.getFileName().equals(event.context());
+                }
+                key.reset();
+                if (changed) {
+                    if (executor != null) {
+                        executor.execute(this::reload);
+                    } else {
+                        reload();
+                    }
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException ex) {
+            // We're done
+        }
+    }
+
+    private void reload() {
+        try {
+            synchronized (props) {
+                props.reload(file, charset);
+            }
+            lastFailure = null;
+        } catch (IOException ex) {
+            lastFailure = ex;
+        } catch (UncheckedIOException ex) {
+            lastFailure = ex.getCause();
+        }
+    }
+}
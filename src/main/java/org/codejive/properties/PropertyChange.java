@@ -0,0 +1,45 @@
+package org.codejive.properties;
+
+import java.util.Objects;
+
+/**
+ * The old and new value of a property that was changed, as reported by <code>PropertiesDiff
+ * </code> and <code>PropertiesChangeEvent</code>. A <code>null</code> old value means the property
+ * was added, a <code>null</code> new value means it was removed.
+ */
+public class PropertyChange {
+    private final String oldValue;
+    private final String newValue;
+
+    PropertyChange(String oldValue, String newValue) {
+        this.oldValue = oldValue;
+        this.newValue = newValue;
+    }
+
+    public String oldValue() {
+        return oldValue;
+    }
+
+    public String newValue() {
+        return newValue;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PropertyChange change = (PropertyChange) o;
+        return Objects.equals(oldValue, change.oldValue)
+                && Objects.equals(newValue, change.newValue);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(oldValue, newValue);
+    }
+
+    @Override
+    public String toString() {
+        return oldValue + " -> " + newValue;
+    }
+}
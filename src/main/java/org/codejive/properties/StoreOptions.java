@@ -0,0 +1,108 @@
+package org.codejive.properties;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Options that determine how <code>Properties.store(Path, StoreOptions, String...)</code> writes a
+ * file. Objects of this class are immutable, each of the <code>with...()</code> methods returns a
+ * new object.
+ */
+public class StoreOptions {
+    private final boolean atomic;
+    private final boolean sync;
+    private final Duration syncDelay;
+
+    private static final StoreOptions DEFAULTS = new StoreOptions(false, false, Duration.ZERO);
+
+    private StoreOptions(boolean atomic, boolean sync, Duration syncDelay) {
+        this.atomic = atomic;
+        this.sync = sync;
+        this.syncDelay = syncDelay;
+    }
+
+    /**
+     * Returns the default options: the file is overwritten directly and nothing is forced to disk,
+     * just like <code>Properties.store(Path, String...)</code> does.
+     *
+     * @return a <code>StoreOptions</code> object
+     */
+    public static StoreOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Returns if the file should be replaced atomically.
+     *
+     * @return <code>true</code> if the file should be replaced atomically
+     */
+    public boolean atomic() {
+        return atomic;
+    }
+
+    /**
+     * Returns a copy of these options that determines if the file will be replaced atomically. When
+     * set, the output is written to a temporary file in the same directory which is then moved into
+     * place using an atomic move. This means that readers will either see the old file or the new
+     * one, never a partially written file, and that a crash halfway won't leave a partially written
+     * file behind either. Storing fails if the file system doesn't support atomic moves.
+     *
+     * @param atomic <code>true</code> if the file should be replaced atomically
+     * @return a <code>StoreOptions</code> object
+     */
+    public StoreOptions withAtomicReplace(boolean atomic) {
+        return new StoreOptions(atomic, sync, syncDelay);
+    }
+
+    /**
+     * Returns if the file should be forced to disk.
+     *
+     * @return <code>true</code> if the file should be forced to disk
+     */
+    public boolean sync() {
+        return sync;
+    }
+
+    /**
+     * Returns a copy of these options that determines if the file will be forced to disk, meaning
+     * that its contents will survive a crash of the system once storing is done.
+     *
+     * @param sync <code>true</code> if the file should be forced to disk
+     * @return a <code>StoreOptions</code> object
+     */
+    public StoreOptions withSync(boolean sync) {
+        return new StoreOptions(atomic, sync, syncDelay);
+    }
+
+    /**
+     * Returns how long forcing the file to disk may be delayed.
+     *
+     * @return a <code>Duration</code>
+     */
+    public Duration syncDelay() {
+        return syncDelay;
+    }
+
+    /**
+     * Returns a copy of these options that allows forcing the file to disk to be delayed by the
+     * given amount of time. Storing will return right after writing the file, which is then forced
+     * to disk when the delay has passed. When the file is overwritten directly, storing it again
+     * during that time won't result in another sync, so storing a file many times in a short period
+     * only causes a single sync. The downside is that a crash during the delay can lose the most
+     * recent changes or leave the file empty or only partly written. When the file is replaced, see
+     * <code>withAtomicReplace()</code>, each store still forces its contents to disk before the
+     * file gets moved into place and only syncing the directory is delayed and shared, so a crash
+     * leaves either the old or a new file. Any error that occurs during a delayed sync is thrown by
+     * the next store to the same file. This has no effect unless <code>withSync(true)</code> is set
+     * as well.
+     *
+     * @param syncDelay the delay, <code>Duration.ZERO</code> to sync right away
+     * @return a <code>StoreOptions</code> object
+     */
+    public StoreOptions withSyncDelay(Duration syncDelay) {
+        if (syncDelay.isNegative()) {
+            throw new IllegalArgumentException("Negative delay: " + syncDelay);
+        }
+        return new StoreOptions(atomic, sync, Objects.requireNonNull(syncDelay));
+    }
+}
@@ -0,0 +1,109 @@
+package org.codejive.properties;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * A live view of the properties whose keys start with a certain prefix, see <code>
+ * Properties.subProperties()</code>. All reads and writes go to the underlying properties.
+ */
+class SubProperties extends AbstractMap<String, String> {
+    private final Properties props;
+    private final String prefix;
+
+    SubProperties(Properties props, String prefix) {
+        this.props = props;
+        this.prefix = prefix;
+    }
+
+    private String fullKey(Object key) {
+        return key instanceof String ? prefix + key : null;
+    }
+
+    @Override
+    public String get(Object key) {
+        String k = fullKey(key);
+        return k != null ? props.get(k) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        String k = fullKey(key);
+        return k != null && props.containsKey(k);
+    }
+
+    @Override
+    public String put(String key, String value) {
+        return props.put(prefix + key, value);
+    }
+
+    @Override
+    public String remove(Object key) {
+        String k = fullKey(key);
+        return k != null ? props.remove(k) : null;
+    }
+
+    @Override
+    public void clear() {
+        // Copying the keys first, the index itself gets changed while removing them
+        for (String k : props.prefixRange(prefix).toArray(new String[0])) {
+            props.remove(k);
+        }
+    }
+
+    @Override
+    public int size() {
+        return props.prefixRange(prefix).size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return props.prefixRange(prefix).isEmpty();
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<Entry<String, String>>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                Iterator<String> iter = props.prefixRange(prefix).iterator();
+                return new Iterator<Entry<String, String>>() {
+                    private String current;
+
+                    @Override
+                    public boolean hasNext() {
+                        return iter.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, String> next() {
+                        current = iter.next();
+                        String key = current.substring(prefix.length());
+                        return new SimpleEntry<String, String>(key, props.get(current)) {
+                            @Override
+                            public String setValue(String value) {
+                                super.setValue(value);
+                                return props.put(prefix + getKey(), value);
+                            }
+                        };
+                    }
+
+                    @Override
+                    public void remove() {
+                        // Removing from the index first keeps the iterator valid, removing the
+                        // property afterwards won't change the index anymore
+                        iter.remove();
+                        props.remove(current);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return SubProperties.this.size();
+            }
+        };
+    }
+}
@@ -0,0 +1,339 @@
+package org.codejive.properties;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The list of tokens that make up a properties table. Tokens are stored in a list of small
+ * fixed-size chunks, which means that inserting or removing a token only has to shift the tokens
+ * within a single chunk instead of all the tokens that follow it. Iterating the list in order, as
+ * is done by <code>Cursor</code> and when storing, is as cheap as with an <code>ArrayList</code>.
+ *
+ * <p>The list also remembers which chunk each <code>KEY</code> token is stored in, which makes it
+ * possible to find the position of a key token without having to scan the entire list.
+ */
+class TokenList extends AbstractList<PropertiesParser.Token> implements RandomAccess {
+    private static final int CHUNK_SIZE = 256;
+
+    private static class Chunk {
+        final PropertiesParser.Token[] tokens = new PropertiesParser.Token[CHUNK_SIZE];
+        int size;
+        // Position of the first token in this chunk and position of the
+        // chunk itself (both only valid for the chunks before `validStarts`)
+        int start;
+        int index;
+    }
+
+    private final ArrayList<Chunk> chunks;
+    private final IdentityHashMap<PropertiesParser.Token, Chunk> keyChunks;
+    private int size;
+    // The number of leading chunks that have an up-to-date `start` and `index`.
+    // They are only updated when needed, so edits near the start of the list
+    // don't have to update all the chunks that follow
+    private int validStarts;
+    // The chunk that was accessed last, which speeds up sequential access
+    private int lastChunk;
+    // When set, every change adds an action that undoes it
+    private List<Runnable> journal;
+
+    TokenList() {
+        chunks = new ArrayList<>();
+        keyChunks = new IdentityHashMap<>();
+    }
+
+    TokenList(Collection<PropertiesParser.Token> tokens) {
+        this();
+        addAll(tokens);
+    }
+
+    /**
+     * Sets the list that will receive an action for every change made to this list, which undoes
+     * that change when run. Running the actions in reverse order restores the list to the state it
+     * was in when the journal was set. Pass <code>null</code> to stop recording changes, which
+     * should also be done before running the actions.
+     *
+     * @param journal a list of undo actions or <code>null</code>
+     */
+    void journal(List<Runnable> journal) {
+        this.journal = journal;
+    }
+
+    @Override
+    public PropertiesParser.Token get(int index) {
+        checkIndex(index);
+        Chunk c = chunks.get(findChunk(index));
+        return c.tokens[index - c.start];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public PropertiesParser.Token set(int index, PropertiesParser.Token token) {
+        checkIndex(index);
+        Chunk c = chunks.get(findChunk(index));
+        int off = index - c.start;
+        PropertiesParser.Token old = c.tokens[off];
+        c.tokens[off] = token;
+        untrack(old);
+        track(token, c);
+        if (journal != null) {
+            journal.add(() -> set(index, old));
+        }
+        return old;
+    }
+
+    @Override
+    public void add(int index, PropertiesParser.Token token) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        int ci;
+        int off;
+        if (index == size) {
+            if (chunks.isEmpty() || chunks.get(chunks.size() - 1).size == CHUNK_SIZE) {
+                chunks.add(new Chunk());
+            }
+            ci = chunks.size() - 1;
+            off = chunks.get(ci).size;
+        } else {
+            ci = findChunk(index);
+            off = index - chunks.get(ci).start;
+        }
+        Chunk c = chunks.get(ci);
+        if (c.size == CHUNK_SIZE) {
+            Chunk n = split(ci);
+            if (off > c.size) {
+                off -= c.size;
+                c = n;
+                ci++;
+            }
+        }
+        System.arraycopy(c.tokens, off, c.tokens, off + 1, c.size - off);
+        c.tokens[off] = token;
+        c.size++;
+        size++;
+        track(token, c);
+        invalidateStarts(ci + 1);
+        modCount++;
+        if (journal != null) {
+            journal.add(() -> remove(index));
+        }
+    }
+
+    @Override
+    public PropertiesParser.Token remove(int index) {
+        checkIndex(index);
+        int ci = findChunk(index);
+        Chunk c = chunks.get(ci);
+        int off = index - c.start;
+        PropertiesParser.Token old = c.tokens[off];
+        System.arraycopy(c.tokens, off + 1, c.tokens, off, c.size - off - 1);
+        c.tokens[--c.size] = null;
+        size--;
+        untrack(old);
+        if (c.size == 0) {
+            chunks.remove(ci);
+            invalidateStarts(ci);
+        } else {
+            invalidateStarts(ci + 1);
+            if (ci + 1 < chunks.size() && c.size + chunks.get(ci + 1).size <= CHUNK_SIZE / 2) {
+                merge(ci);
+            }
+        }
+        modCount++;
+        if (journal != null) {
+            journal.add(() -> add(index, old));
+        }
+        return old;
+    }
+
+    /**
+     * Removes all tokens whose positions are set in the given <code>BitSet</code>. This takes a
+     * single pass over the chunks that contain any of those tokens, instead of shifting the tokens
+     * and updating the chunk positions once for every token that gets removed.
+     *
+     * @param positions the positions of the tokens to remove
+     */
+    void removeAll(BitSet positions) {
+        if (journal != null) {
+            // Putting the tokens back in order of their original positions restores the list
+            int[] undoPositions = positions.stream().toArray();
+            PropertiesParser.Token[] undoTokens = new PropertiesParser.Token[undoPositions.length];
+            for (int i = 0; i < undoPositions.length; i++) {
+                undoTokens[i] = get(undoPositions[i]);
+            }
+            journal.add(
+                    () -> {
+                        for (int i = 0; i < undoPositions.length; i++) {
+                            add(undoPositions[i], undoTokens[i]);
+                        }
+                    });
+        }
+        ArrayList<Chunk> kept = new ArrayList<>(chunks.size());
+        int pos = 0;
+        for (Chunk c : chunks) {
+            int next = positions.nextSetBit(pos);
+            if (next >= 0 && next < pos + c.size) {
+                int n = 0;
+                for (int i = 0; i < c.size; i++) {
+                    PropertiesParser.Token token = c.tokens[i];
+                    if (positions.get(pos + i)) {
+                        untrack(token);
+                    } else {
+                        c.tokens[n++] = token;
+                    }
+                }
+                Arrays.fill(c.tokens, n, c.size, null);
+                pos += c.size;
+                size -= c.size - n;
+                c.size = n;
+            } else {
+                pos += c.size;
+            }
+            if (c.size > 0) {
+                kept.add(c);
+            }
+        }
+        chunks.clear();
+        chunks.addAll(kept);
+        validStarts = 0;
+        lastChunk = 0;
+        modCount++;
+    }
+
+    @Override
+    public void clear() {
+        if (journal != null && size > 0) {
+            ArrayList<PropertiesParser.Token> undoTokens = new ArrayList<>(this);
+            journal.add(() -> addAll(undoTokens));
+        }
+        chunks.clear();
+        keyChunks.clear();
+        size = 0;
+        validStarts = 0;
+        lastChunk = 0;
+        modCount++;
+    }
+
+    /**
+     * Returns the position of the given <code>KEY</code> token in this list. The token is looked up
+     * by identity, not by equality.
+     *
+     * @param keyToken a <code>KEY</code> token
+     * @return the token's position or <code>-1</code> if the token is not part of this list
+     */
+    int positionOf(PropertiesParser.Token keyToken) {
+        Chunk c = keyChunks.get(keyToken);
+        if (c != null) {
+            if (c.index >= validStarts || chunks.get(c.index) != c) {
+                // The chunk's start is not known, so update all starts up to it
+                while (validStarts < chunks.size() && updateStart() != c) {}
+            }
+            for (int i = 0; i < c.size; i++) {
+                if (c.tokens[i] == keyToken) {
+                    return c.start + i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private int findChunk(int index) {
+        // Make sure starts are valid up to the chunk that contains the index
+        while (validStarts < chunks.size()
+                && (validStarts == 0 || end(chunks.get(validStarts - 1)) <= index)) {
+            updateStart();
+        }
+        // Try the last used chunk and its successor first
+        for (int ci = lastChunk; ci < lastChunk + 2 && ci < validStarts; ci++) {
+            Chunk c = chunks.get(ci);
+            if (index >= c.start && index < end(c)) {
+                return (lastChunk = ci);
+            }
+        }
+        int lo = 0;
+        int hi = validStarts - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (chunks.get(mid).start <= index) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return (lastChunk = lo);
+    }
+
+    // Updates the start of the first chunk that doesn't have a valid one
+    private Chunk updateStart() {
+        Chunk c = chunks.get(validStarts);
+        c.start = validStarts == 0 ? 0 : end(chunks.get(validStarts - 1));
+        c.index = validStarts++;
+        return c;
+    }
+
+    private static int end(Chunk c) {
+        return c.start + c.size;
+    }
+
+    private void invalidateStarts(int ci) {
+        validStarts = Math.min(validStarts, ci);
+    }
+
+    // Moves the upper half of the given chunk to a new chunk that
+    // gets inserted right after it
+    private Chunk split(int ci) {
+        Chunk c = chunks.get(ci);
+        Chunk n = new Chunk();
+        int half = c.size / 2;
+        n.size = c.size - half;
+        System.arraycopy(c.tokens, half, n.tokens, 0, n.size);
+        Arrays.fill(c.tokens, half, c.size, null);
+        c.size = half;
+        for (int i = 0; i < n.size; i++) {
+            track(n.tokens[i], n);
+        }
+        chunks.add(ci + 1, n);
+        invalidateStarts(ci + 1);
+        return n;
+    }
+
+    // Moves all tokens of the chunk following the given one into it
+    private void merge(int ci) {
+        Chunk c = chunks.get(ci);
+        Chunk n = chunks.remove(ci + 1);
+        System.arraycopy(n.tokens, 0, c.tokens, c.size, n.size);
+        for (int i = 0; i < n.size; i++) {
+            track(n.tokens[i], c);
+        }
+        c.size += n.size;
+        invalidateStarts(ci + 1);
+    }
+
+    private void track(PropertiesParser.Token token, Chunk c) {
+        if (token.type == PropertiesParser.Type.KEY) {
+            keyChunks.put(token, c);
+        }
+    }
+
+    private void untrack(PropertiesParser.Token token) {
+        if (token.type == PropertiesParser.Type.KEY) {
+            keyChunks.remove(token);
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.codejive.properties;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+public class TestConcurrentProperties {
+    @Test
+    void testRoundTrip() throws IOException, URISyntaxException {
+        Path f = getResource("/test.properties");
+        ConcurrentProperties p = new ConcurrentProperties();
+        p.load(f);
+        assertThat(p).isEqualTo(Properties.loadProperties(f));
+        assertThat(p.getComment("three"))
+                .containsExactly("# another comment", "! and a comment", "! block");
+        StringWriter sw = new StringWriter();
+        p.store(sw);
+        assertThat(sw.toString()).isEqualTo(readAll(f));
+    }
+
+    @Test
+    void testChanges() throws IOException, URISyntaxException {
+        Properties defaults = new Properties();
+        defaults.put("default", "value");
+        Properties props = new Properties(defaults);
+        props.load(getResource("/test.properties"));
+        ConcurrentProperties p = new ConcurrentProperties(props);
+        assertThat(p.put("one", "changed")).isEqualTo("simple");
+        assertThat(p.putRaw("new", "\\u1234")).isNull();
+        assertThat(p.remove("two")).isEqualTo("value containing spaces");
+        p.setComment("one", "# comment");
+        assertThat(p.get("one")).isEqualTo("changed");
+        assertThat(p.getRaw("new")).isEqualTo("\\u1234");
+        assertThat(p.getProperty("new")).isEqualTo("\u1234");
+        assertThat(p.getProperty("default")).isEqualTo("value");
+        assertThat(p.getProperty("missing", "dummy")).isEqualTo("dummy");
+        assertThat(p).doesNotContainKey("two").hasSize(7);
+        assertThat(p.getComment("one")).containsExactly("# comment");
+        assertThatThrownBy(() -> p.keySet().remove("one"))
+                .isInstanceOf(UnsupportedOperationException.class);
+        p.clear();
+        assertThat(p).isEmpty();
+    }
+
+    @Test
+    void testConcurrentReads() throws Exception {
+        ConcurrentProperties p = new ConcurrentProperties();
+        for (int i = 0; i < 100; i++) {
+            p.put("key" + i, "0");
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int t = 0; t < 3; t++) {
+                readers.add(
+                        executor.submit(
+                                () -> {
+                                    while (!done.get()) {
+                                        // Values never disappear while being replaced
+                                        for (int i = 0; i < 100; i++) {
+                                            assertThat(p.get("key" + i)).isNotNull();
+                                        }
+                                        assertThat(p).hasSize(100);
+                                    }
+                                }));
+            }
+            for (int n = 1; n <= 200; n++) {
+                p.put("key" + (n % 100), Integer.toString(n));
+            }
+            done.set(true);
+            for (Future<?> reader : readers) {
+                reader.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(p.get("key0")).isEqualTo("200");
+    }
+
+    private Path getResource(String name) throws URISyntaxException {
+        return Paths.get(getClass().getResource(name).toURI());
+    }
+
+    private String readAll(Path f) throws IOException {
+        return new String(Files.readAllBytes(f));
+    }
+}
@@ -0,0 +1,93 @@
+package org.codejive.properties;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.junit.jupiter.api.Test;
+
+public class TestFrozenProperties {
+    @Test
+    void testFreeze() throws IOException, URISyntaxException {
+        Properties p = Properties.loadProperties(getResource("/test.properties"));
+        FrozenProperties f = p.freeze();
+        assertThat(f).isEqualTo(p);
+        assertThat(f.keySet()).containsExactlyElementsOf(p.keySet());
+        assertThat(f.get("three")).isEqualTo("and escapes\n\t\r\f");
+        assertThat(f.getProperty("key.4")).isEqualTo("\u1234\u1234");
+        assertThat(f.get("missing")).isNull();
+        assertThat(f.get(null)).isNull();
+        assertThatThrownBy(() -> f.put("one", "changed"))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> f.entrySet().iterator().next().setValue("changed"))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> f.keySet().remove("one"))
+                .isInstanceOf(UnsupportedOperationException.class);
+        p.put("one", "changed");
+        assertThat(f.get("one")).isEqualTo("simple");
+    }
+
+    @Test
+    void testDefaults() {
+        Properties global = new Properties();
+        global.put("a", "global");
+        global.put("b", "global");
+        global.put("c", "global");
+        Properties region = new Properties(global);
+        region.put("b", "region");
+        Properties p = new Properties(region);
+        p.put("c", "local");
+        p.put("d", "local");
+        FrozenProperties f = p.freeze();
+        assertThat(f).containsOnlyKeys("c", "d");
+        assertThat(f.get("a")).isNull();
+        assertThat(f.getProperty("a")).isEqualTo("global");
+        assertThat(f.getProperty("b")).isEqualTo("region");
+        assertThat(f.getProperty("c")).isEqualTo("local");
+        assertThat(f.getProperty("e", "dummy")).isEqualTo("dummy");
+        assertThat(f.stringPropertyNames())
+                .containsExactlyInAnyOrderElementsOf(p.stringPropertyNames());
+    }
+
+    @Test
+    void testThaw() throws IOException, URISyntaxException {
+        Path file = getResource("/test.properties");
+        Properties defaults = new Properties();
+        defaults.setProperty("default", "value", "# a default");
+        Properties p = new Properties(defaults);
+        p.load(file);
+        FrozenProperties f = p.freeze();
+        Properties t = f.thaw();
+        assertThat(t).isEqualTo(p);
+        assertThat(t.getProperty("default")).isEqualTo("value");
+        assertThat(t.getPropertyComment("default")).containsExactly("# a default");
+        StringWriter sw = new StringWriter();
+        t.store(sw);
+        assertThat(sw.toString()).isEqualTo(new String(Files.readAllBytes(file)));
+        t.put("one", "changed");
+        assertThat(p.get("one")).isEqualTo("simple");
+        p.remove("two");
+        assertThat(f.thaw()).containsEntry("one", "simple").containsKey("two");
+    }
+
+    @Test
+    void testLarge() {
+        Properties p = new Properties();
+        for (int i = 0; i < 10000; i++) {
+            p.put("key" + i, i % 2 == 0 ? "even" : "odd");
+        }
+        FrozenProperties f = p.freeze();
+        assertThat(f).hasSize(10000).isEqualTo(p);
+        for (int i = 0; i < 10000; i++) {
+            assertThat(f.get("key" + i)).isSameAs(f.get("key" + (i % 2)));
+        }
+    }
+
+    private Path getResource(String name) throws URISyntaxException {
+        return Paths.get(getClass().getResource(name).toURI());
+    }
+}
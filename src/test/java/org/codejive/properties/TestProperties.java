@@ -4,14 +4,37 @@ import static org.assertj.core.api.Assertions.*;
 
 import java.io.*;
 import java.net.URISyntaxException;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
 import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 public class TestProperties {
     @Test
@@ -109,6 +132,246 @@ public class TestProperties {
                         new AbstractMap.SimpleEntry<>("key.4", "\\u1234\u1234"));
     }
 
+    @Test
+    void testLoadMapped() throws IOException, URISyntaxException {
+        for (String name : new String[] {"/test.properties", "/testcrlf.properties"}) {
+            Path f = getResource(name);
+            Properties p = Properties.loadProperties(f);
+            Properties pm =
+                    Properties.loadProperties(f, LoadOptions.defaults().withMemoryMapping(true));
+            assertThat(pm.entrySet()).containsExactlyElementsOf(p.entrySet());
+            assertThat(pm.rawEntrySet()).containsExactlyElementsOf(p.rawEntrySet());
+            assertThat(pm.getComment("three")).containsExactlyElementsOf(p.getComment("three"));
+            StringWriter sw = new StringWriter();
+            pm.store(sw);
+            assertThat(sw.toString()).isEqualTo(readAll(f));
+        }
+    }
+
+    @Test
+    void testLoadMappedLatin1(@TempDir Path tmp) throws IOException {
+        Path f = tmp.resolve("latin1.properties");
+        Files.write(
+                f,
+                "# caf\u00e9\nkl\u00e9=v\u00e4lue \\u00e9\n".getBytes(StandardCharsets.ISO_8859_1));
+        Properties p =
+                Properties.loadProperties(
+                        f,
+                        LoadOptions.defaults()
+                                .withCharset(StandardCharsets.ISO_8859_1)
+                                .withMemoryMapping(true));
+        assertThat(p).containsOnlyKeys("kl\u00e9");
+        assertThat(p.get("kl\u00e9")).isEqualTo("v\u00e4lue \u00e9");
+        assertThat(p.getComment("kl\u00e9")).containsExactly("# caf\u00e9");
+    }
+
+    @Test
+    void testLoadMappedMalformed(@TempDir Path tmp) throws IOException {
+        Path f = tmp.resolve("malformed.properties");
+        Files.write(f, new byte[] {'k', '=', (byte) 0xc3, '\n'});
+        assertThatThrownBy(
+                        () ->
+                                Properties.loadProperties(
+                                        f, LoadOptions.defaults().withMemoryMapping(true)))
+                .isInstanceOf(CharacterCodingException.class);
+    }
+
+    @Test
+    void testLoadMappedLazy() throws IOException, URISyntaxException {
+        LoadOptions lazy = LoadOptions.defaults().withMemoryMapping(true).withLazyDecoding(true);
+        for (String name : new String[] {"/test.properties", "/testcrlf.properties"}) {
+            Path f = getResource(name);
+            Properties p = Properties.loadProperties(f);
+            Properties pm = Properties.loadProperties(f, lazy);
+            assertThat(pm.entrySet()).containsExactlyElementsOf(p.entrySet());
+            assertThat(pm.rawEntrySet()).containsExactlyElementsOf(p.rawEntrySet());
+            assertThat(pm.getComment("three")).containsExactlyElementsOf(p.getComment("three"));
+            StringWriter sw = new StringWriter();
+            pm.store(sw);
+            assertThat(sw.toString()).isEqualTo(readAll(f));
+        }
+        Properties p = Properties.loadProperties(getResource("/test.properties"), lazy);
+        assertThat(p.put("one", "changed")).isEqualTo("simple");
+        assertThat(p.remove("altsep")).isEqualTo("value");
+        assertThat(p.setComment("three", "# new"))
+                .containsExactly("# another comment", "! and a comment", "! block");
+        for (Map.Entry<String, String> e : p.entrySet()) {
+            if (e.getKey().equals("three")) {
+                assertThat(e.setValue("3")).isEqualTo("and escapes\n\t\r\f");
+            }
+        }
+        assertThat(p.get("one")).isEqualTo("changed");
+        assertThat(p.getRaw("three")).isEqualTo("3");
+        assertThat(p).doesNotContainKey("altsep");
+        assertThat(p.getComment("three")).containsExactly("# new");
+    }
+
+    @Test
+    void testLoadMappedLazyMalformed(@TempDir Path tmp) throws IOException {
+        Path f = tmp.resolve("malformed.properties");
+        Files.write(f, new byte[] {'k', '=', (byte) 0xc3, '\n'});
+        Properties p =
+                Properties.loadProperties(
+                        f, LoadOptions.defaults().withMemoryMapping(true).withLazyDecoding(true));
+        assertThat(p.keySet()).containsExactly("k");
+        assertThatThrownBy(() -> p.get("k"))
+                .isInstanceOf(UncheckedIOException.class)
+                .hasCauseInstanceOf(CharacterCodingException.class);
+    }
+
+    @Test
+    void testLoadMappedLazyConcurrent(@TempDir Path tmp) throws Exception {
+        Path f = tmp.resolve("concurrent.properties");
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            lines.add("key" + i + "=" + (i % 2 == 0 ? "value" : "välüé") + i);
+        }
+        Files.write(f, lines, StandardCharsets.UTF_8);
+        Properties p =
+                Properties.loadProperties(
+                        f, LoadOptions.defaults().withMemoryMapping(true).withLazyDecoding(true));
+        readConcurrently(
+                () -> {
+                    for (int i = 0; i < 1000; i++) {
+                        assertThat(p.get("key" + i))
+                                .isEqualTo((i % 2 == 0 ? "value" : "välüé") + i);
+                    }
+                },
+                () -> {});
+    }
+
+    @Test
+    void testStoreMappedLazy(@TempDir Path tmp) throws IOException, URISyntaxException {
+        Path f = tmp.resolve("test.properties");
+        Files.copy(getResource("/test.properties"), f);
+        LoadOptions lazy = LoadOptions.defaults().withMemoryMapping(true).withLazyDecoding(true);
+        Properties pm = Properties.loadProperties(f, lazy);
+        Properties p = Properties.loadProperties(f);
+        for (Properties props : new Properties[] {p, pm}) {
+            props.put("one", "changed \u1234");
+            props.remove("altsep");
+            props.setComment("three", "# new comment");
+            props.put("new", "value");
+        }
+        Path other = tmp.resolve("other.properties");
+        Files.createFile(other);
+        p.store(other, "header");
+        pm.store(f, "header");
+        assertThat(readAll(f)).isEqualTo(readAll(other));
+        // The tokens must still be usable after their file has been replaced
+        pm.store(f);
+        p.store(other);
+        assertThat(readAll(f)).isEqualTo(readAll(other));
+        assertThat(pm.getComment("two")).isEqualTo(p.getComment("two"));
+        assertThat(Properties.loadProperties(f)).isEqualTo(p);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        pm.store(os);
+        assertThat(os.toString("ISO-8859-1")).isEqualTo(readAll(f).replace('\u1234', '?'));
+    }
+
+    @Test
+    void testStoreIncremental(@TempDir Path tmp) throws IOException, URISyntaxException {
+        Path f = tmp.resolve("test.properties");
+        Files.copy(getResource("/test.properties"), f);
+        Object fileKey = Files.readAttributes(f, BasicFileAttributes.class).fileKey();
+        Properties pm =
+                Properties.loadProperties(
+                        f, LoadOptions.defaults().withMemoryMapping(true).withLazyDecoding(true));
+        Properties p = Properties.loadProperties(f);
+        List<Consumer<Properties>> edits =
+                Arrays.asList(
+                        props -> props.put("one", "SIMPLE"),
+                        props -> props.put("altsep", "VALUE"),
+                        props -> props.put("new", "value \u1234"),
+                        props -> props.remove("new"),
+                        props -> props.setComment("key.4", "# changed"),
+                        props -> props.put("two", "a longer value near the top"));
+        Path other = tmp.resolve("other.properties");
+        Files.createFile(other);
+        for (Consumer<Properties> edit : edits) {
+            edit.accept(p);
+            edit.accept(pm);
+            pm.storeIncremental(f);
+            p.store(other);
+            assertThat(readAll(f)).isEqualTo(readAll(other));
+            assertThat(pm).isEqualTo(p);
+            assertThat(pm.rawEntrySet()).containsExactlyElementsOf(p.rawEntrySet());
+            // All but the last edit can be done in place
+            Object newKey = Files.readAttributes(f, BasicFileAttributes.class).fileKey();
+            if (edit != edits.get(edits.size() - 1)) {
+                assertThat(newKey).isEqualTo(fileKey);
+            } else {
+                assertThat(newKey).isNotEqualTo(fileKey);
+            }
+        }
+        // Once the file has been replaced it can't be patched anymore
+        pm.put("one", "simple");
+        p.put("one", "simple");
+        pm.storeIncremental(f);
+        p.store(other);
+        assertThat(readAll(f)).isEqualTo(readAll(other));
+    }
+
+    @Test
+    void testStoreIncrementalInPlace(@TempDir Path tmp) throws IOException, URISyntaxException {
+        Path f = tmp.resolve("test.properties");
+        Files.copy(getResource("/test.properties"), f);
+        Object fileKey = Files.readAttributes(f, BasicFileAttributes.class).fileKey();
+        Properties pm =
+                Properties.loadProperties(
+                        f, LoadOptions.defaults().withMemoryMapping(true).withLazyDecoding(true));
+        pm.put("one", "SIMPLE");
+        pm.put("key.4", "a new value at the end");
+        pm.storeIncremental(f);
+        assertThat(Files.readAttributes(f, BasicFileAttributes.class).fileKey()).isEqualTo(fileKey);
+        assertThat(Properties.loadProperties(f)).isEqualTo(pm);
+        assertThat(pm.getProperty("multiline")).isEqualTo("one two  three");
+    }
+
+    @Test
+    void testStoreAtomic(@TempDir Path tmp) throws IOException, URISyntaxException {
+        Path f = tmp.resolve("test.properties");
+        Files.copy(getResource("/test.properties"), f);
+        boolean posix = Files.getFileAttributeView(f, PosixFileAttributeView.class) != null;
+        if (posix) {
+            Files.setPosixFilePermissions(f, PosixFilePermissions.fromString("rw-rw-r--"));
+        }
+        Properties p = Properties.loadProperties(f);
+        p.put("one", "changed");
+        p.store(f, StoreOptions.defaults().withAtomicReplace(true).withSync(true));
+        assertThat(Properties.loadProperties(f)).isEqualTo(p);
+        if (posix) {
+            assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(f)))
+                    .isEqualTo("rw-rw-r--");
+        }
+        // The file doesn't have to exist
+        Path f2 = tmp.resolve("new.properties");
+        p.store(f2, StoreOptions.defaults().withAtomicReplace(true));
+        assertThat(readAll(f2)).isEqualTo(readAll(f));
+        try (Stream<Path> files = Files.list(tmp)) {
+            assertThat(files).containsExactlyInAnyOrder(f, f2);
+        }
+    }
+
+    @Test
+    void testStoreSyncDelayed(@TempDir Path tmp) throws IOException, URISyntaxException {
+        Path f = tmp.resolve("test.properties");
+        Files.copy(getResource("/test.properties"), f);
+        Properties p = Properties.loadProperties(f);
+        StoreOptions options =
+                StoreOptions.defaults()
+                        .withAtomicReplace(true)
+                        .withSync(true)
+                        .withSyncDelay(Duration.ofMillis(50));
+        for (int i = 0; i < 10; i++) {
+            p.put("one", "value " + i);
+            p.store(f, options);
+            assertThat(Properties.loadProperties(f).get("one")).isEqualTo("value " + i);
+        }
+        assertThatThrownBy(() -> options.withSyncDelay(Duration.ofMillis(-1)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
     @Test
     void testStore() throws IOException, URISyntaxException {
         Path f = getResource("/test.properties");
@@ -127,6 +390,18 @@ public class TestProperties {
         assertThat(os.toString()).isEqualTo(readAll(f));
     }
 
+    @Test
+    void testStoreBufferedOutputStream() throws IOException, URISyntaxException {
+        Path f = getResource("/test-escaped.properties");
+        Properties p = Properties.loadProperties(f);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        p.store(new BufferedOutputStream(os));
+        assertThat(os.toString()).isEqualTo(readAll(f));
+        os.reset();
+        p.list(new PrintStream(new BufferedOutputStream(os)));
+        assertThat(os.toString()).startsWith("one=simple\n");
+    }
+
     @Test
     void testStoreCrLf() throws IOException, URISyntaxException {
         Path f = getResource("/testcrlf.properties");
@@ -195,6 +470,459 @@ public class TestProperties {
         assertThat(sw.toString()).isEqualTo(readAll(getResource("/test-getproperty.properties")));
     }
 
+    @Test
+    void testApplyBatch() throws IOException, URISyntaxException {
+        Map<String, String> puts = new LinkedHashMap<>();
+        puts.put("two", "a different two");
+        puts.put("new", "a new value");
+        puts.put("three", "three again");
+        puts.put("key.4", "\u1234");
+        puts.put("another", "one");
+        List<String> removes = Arrays.asList("one", "three", " with spaces", "missing");
+        Properties p = Properties.loadProperties(getResource("/test.properties"));
+        p.applyBatch(puts, removes);
+        Properties expected = Properties.loadProperties(getResource("/test.properties"));
+        removes.forEach(expected::remove);
+        puts.forEach(expected::put);
+        assertThat(p).containsExactlyEntriesOf(expected);
+        StringWriter sw = new StringWriter();
+        p.store(sw);
+        StringWriter esw = new StringWriter();
+        expected.store(esw);
+        assertThat(sw.toString()).isEqualTo(esw.toString());
+        assertThat(p.getRaw("key.4")).isEqualTo("\u1234");
+        assertThat(p.getComment("three")).isEmpty();
+        assertThat(p.keysWithPrefix("")).containsExactlyInAnyOrderElementsOf(p.keySet());
+        p.put("one", "simple");
+        assertThat(p.get("one")).isEqualTo("simple");
+        assertThatThrownBy(() -> p.applyBatch(Collections.singletonMap("x", null), removes))
+                .isInstanceOf(NullPointerException.class);
+    }
+
+    @Test
+    void testEditRollback() throws IOException, URISyntaxException {
+        Path f = getResource("/test.properties");
+        Properties p = Properties.loadProperties(f);
+        Properties expected = Properties.loadProperties(f);
+        SortedSet<String> keys = p.keysWithPrefix("");
+        EditSession edit = p.beginEdit();
+        assertThatThrownBy(p::beginEdit).isInstanceOf(IllegalStateException.class);
+        p.put("one", "changed");
+        p.putCommented("new", "value", "# new comment");
+        p.setComment("two", "# changed comment");
+        p.putRaw("key.4", "\\u0041");
+        assertThat(p.remove("three")).isEqualTo("and escapes\n\t\r\f");
+        p.applyBatch(Collections.singletonMap("another", "one"), Arrays.asList("altsep"));
+        edit.rollback();
+        assertThat(edit.isActive()).isFalse();
+        assertThatThrownBy(edit::commit).isInstanceOf(IllegalStateException.class);
+        assertThat(p).containsExactlyEntriesOf(expected);
+        assertThat(p.getComment("three")).containsExactlyElementsOf(expected.getComment("three"));
+        assertThat(keys).containsExactlyInAnyOrderElementsOf(expected.keySet());
+        assertThat(p.getRaw("key.4")).isEqualTo(expected.getRaw("key.4"));
+        StringWriter sw = new StringWriter();
+        p.store(sw);
+        assertThat(sw.toString()).isEqualTo(readAll(f));
+
+        // Without removals, and with everything removed
+        try (EditSession e = p.beginEdit()) {
+            p.put("one", "changed");
+            p.put("new", "value");
+        }
+        assertThat(p).containsExactlyEntriesOf(expected);
+        try (EditSession e = p.beginEdit()) {
+            p.clear();
+            p.put("new", "value");
+        }
+        assertThat(p).containsExactlyEntriesOf(expected);
+        sw = new StringWriter();
+        p.store(sw);
+        assertThat(sw.toString()).isEqualTo(readAll(f));
+    }
+
+    @Test
+    void testEditCommit() throws IOException, URISyntaxException {
+        Properties p = Properties.loadProperties(getResource("/test.properties"));
+        try (EditSession edit = p.beginEdit()) {
+            p.put("one", "changed");
+            p.remove("two");
+            edit.commit();
+        }
+        assertThat(p.get("one")).isEqualTo("changed");
+        assertThat(p).doesNotContainKey("two");
+        p.beginEdit().rollback();
+        assertThat(p.get("one")).isEqualTo("changed");
+    }
+
+    @Test
+    void testChangeListener() throws IOException, URISyntaxException {
+        Properties p = Properties.loadProperties(getResource("/test.properties"));
+        List<PropertiesChangeEvent> events = new ArrayList<>();
+        PropertiesChangeListener listener = events::add;
+        p.addChangeListener(listener);
+        p.put("one", "changed");
+        p.put("one", "changed");
+        p.putRaw("new", "\\u0041");
+        p.remove("two");
+        p.setComment("three", "# comment");
+        assertThat(events).hasSize(4);
+        assertThat(events.get(0).changes())
+                .containsExactly(entry("one", new PropertyChange("simple", "changed")));
+        assertThat(events.get(1).changes())
+                .containsExactly(entry("new", new PropertyChange(null, "A")));
+        assertThat(events.get(2).changes())
+                .containsExactly(entry("two", new PropertyChange("value containing spaces", null)));
+        assertThat(events.get(3).changes()).isEmpty();
+        assertThat(events.get(3).comments()).containsExactly("three");
+
+        events.clear();
+        p.load(new StringReader("one=again\nfour=4\n"));
+        p.clear();
+        assertThat(events).hasSize(2);
+        assertThat(events.get(0).changes())
+                .containsEntry("one", new PropertyChange("changed", "again"))
+                .containsEntry("four", new PropertyChange(null, "4"))
+                .containsEntry("new", new PropertyChange("A", null));
+        assertThat(events.get(1).changes()).containsOnlyKeys("one", "four");
+
+        events.clear();
+        p.removeChangeListener(listener);
+        p.put("one", "unheard");
+        assertThat(events).isEmpty();
+    }
+
+    @Test
+    void testChangeListenerBatch() throws IOException, URISyntaxException {
+        Properties p = Properties.loadProperties(getResource("/test.properties"));
+        List<PropertiesChangeEvent> events = new ArrayList<>();
+        p.addChangeListener(events::add);
+        p.batch(
+                () -> {
+                    p.put("one", "changed");
+                    p.put("one", "simple");
+                    p.put("two", "first");
+                    p.put("two", "second");
+                    p.putCommented("new", "value", "# comment");
+                });
+        assertThat(events).hasSize(1);
+        assertThat(events.get(0).changes())
+                .containsExactly(
+                        entry("two", new PropertyChange("value containing spaces", "second")),
+                        entry("new", new PropertyChange(null, "value")));
+        assertThat(events.get(0).comments()).containsExactly("new");
+
+        events.clear();
+        p.applyBatch(Collections.singletonMap("one", "batched"), Arrays.asList("two", "new"));
+        assertThat(events).hasSize(1);
+        assertThat(events.get(0).changes()).containsOnlyKeys("one", "two", "new");
+
+        events.clear();
+        try (EditSession edit = p.beginEdit()) {
+            p.put("one", "edited");
+            p.remove("three");
+        }
+        assertThat(events).hasSize(3);
+        assertThat(events.get(2).changes())
+                .containsExactly(
+                        entry("one", new PropertyChange("edited", "batched")),
+                        entry("three", new PropertyChange(null, "and escapes\n\t\r\f")));
+    }
+
+    @Test
+    void testLoadReplaces() throws IOException {
+        Properties p = Properties.loadProperties(new StringReader("a=1\nb=2\n"));
+        p.load(new StringReader("b=3\n"));
+        assertThat(p).containsExactly(entry("b", "3"));
+        assertThat(p.keysWithPrefix("")).containsExactly("b");
+    }
+
+    @Test
+    void testReload(@TempDir Path tmp) throws IOException, URISyntaxException {
+        Path f = tmp.resolve("reload.properties");
+        String orig = readAll(getResource("/test.properties"));
+        Files.write(f, orig.getBytes(StandardCharsets.UTF_8));
+        Properties p = Properties.loadProperties(f);
+        List<PropertiesChangeEvent> events = new ArrayList<>();
+        p.addChangeListener(events::add);
+
+        String[] edits = {
+            orig.replace("one=simple", "one=changed"),
+            orig.replace("multiline = one \\\n", "multiline = one, \\\n"),
+            orig.replace("one=simple\n", "one=simple\nnew=value\n"),
+            orig.replace("two=value containing spaces\n", ""),
+            orig.replace("one=simple\ntwo=value containing spaces\n", "two=swapped\none=simple\n"),
+            orig + "appended=yes",
+            orig + "appended=yes\nand=more\n",
+            orig.replace("# another comment\n", ""),
+            orig.replace("one=simple\n", "one=simple\\\n"),
+            orig.replace("one=simple\n", "new=value\none=changed\n"),
+            orig.replace("# final comment\n", "# final comment\\\n"),
+            "",
+            orig
+        };
+        for (String edit : edits) {
+            Files.write(f, edit.getBytes(StandardCharsets.UTF_8));
+            p.reload(f);
+            Properties expected = Properties.loadProperties(f);
+            assertThat(p).containsExactlyEntriesOf(expected);
+            assertThat(p.keysWithPrefix("")).isEqualTo(expected.keysWithPrefix(""));
+            for (String key : expected.keySet()) {
+                assertThat(p.getComment(key)).isEqualTo(expected.getComment(key));
+            }
+            StringWriter sw = new StringWriter();
+            p.store(sw);
+            assertThat(sw.toString()).isEqualTo(edit);
+        }
+        assertThat(events.get(0).changes())
+                .containsExactly(entry("one", new PropertyChange("simple", "changed")));
+        assertThat(events.get(1).changes()).containsOnlyKeys("one", "multiline");
+    }
+
+    @Test
+    void testReloadMatchesLoad(@TempDir Path tmp) throws IOException {
+        String[][] edits = {
+            {"a=1\nb=2\n", "a=1\\\nb=2\n"},
+            {"a=1\nb=2\nc=3\n", "a=1\\\nb=2\\\nc=3\n"},
+            {"x=0\nb=1\n", "x=0\na=0\nb=2\n"},
+            {"x=0\nb=1\nc=1\n", "x=0\nb=2\na=0\nc=1\n"},
+            {"dup=1\n", "dup\\\n"},
+            {"esc\\ key=v\\\\\n", "esc\\ key\\\n"},
+            {"a\r\n: ", "a "},
+            {"a=1\r", "a=1\r\n"}
+        };
+        Path f = tmp.resolve("reload.properties");
+        for (String[] edit : edits) {
+            Files.write(f, edit[0].getBytes(StandardCharsets.UTF_8));
+            Properties p = Properties.loadProperties(f);
+            Files.write(f, edit[1].getBytes(StandardCharsets.UTF_8));
+            p.reload(f);
+            Properties expected = Properties.loadProperties(f);
+            assertThat(p).containsExactlyEntriesOf(expected);
+            assertThat(p.keySet()).containsExactlyElementsOf(expected.keySet());
+            assertThat(describe(p.tokens())).isEqualTo(describe(expected.tokens()));
+        }
+    }
+
+    @Test
+    void testReloadRandom(@TempDir Path tmp) throws IOException {
+        // None of the parts contain a "u", so no invalid unicode escapes can be made
+        String[] parts = {
+            "a",
+            "b",
+            "key=val\n",
+            "esc\\ key",
+            "=",
+            ":",
+            " ",
+            "\t",
+            "\\",
+            "\\\\",
+            "\n",
+            "\r\n",
+            "\r",
+            "#",
+            "!",
+            "v"
+        };
+        Random rnd = new Random(42);
+        Path f = tmp.resolve("reload.properties");
+        for (int n = 0; n < 2000; n++) {
+            String before = randomText(rnd, parts);
+            String after = rnd.nextBoolean() ? randomText(rnd, parts) : edit(rnd, parts, before);
+            Files.write(f, before.getBytes(StandardCharsets.UTF_8));
+            Properties p = Properties.loadProperties(f);
+            Files.write(f, after.getBytes(StandardCharsets.UTF_8));
+            p.reload(f);
+            Properties expected = Properties.loadProperties(f);
+            String desc = "reloading '" + before + "' as '" + after + "'";
+            assertThat(p).as(desc).containsExactlyEntriesOf(expected);
+            assertThat(p.keysWithPrefix("")).as(desc).isEqualTo(expected.keysWithPrefix(""));
+            assertThat(describe(p.tokens())).as(desc).isEqualTo(describe(expected.tokens()));
+        }
+    }
+
+    private static String randomText(Random rnd, String[] parts) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = rnd.nextInt(12); i > 0; i--) {
+            sb.append(parts[rnd.nextInt(parts.length)]);
+        }
+        return sb.toString();
+    }
+
+    // Replaces, inserts or removes a small part of the text
+    private static String edit(Random rnd, String[] parts, String text) {
+        int from = rnd.nextInt(text.length() + 1);
+        int to = Math.min(text.length(), from + rnd.nextInt(3));
+        String insert = rnd.nextBoolean() ? parts[rnd.nextInt(parts.length)] : "";
+        return text.substring(0, from) + insert + text.substring(to);
+    }
+
+    private static List<String> describe(List<PropertiesParser.Token> tokens) {
+        return tokens.stream()
+                .map(t -> t.getType() + ":" + t.getRaw() + ":" + t.getText())
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void testKeysWithPrefix() {
+        Properties p = new Properties();
+        p.put("db.pool.size", "10");
+        p.put("db.url", "jdbc:h2:mem");
+        p.put("db.pool.idle", "2");
+        p.put("dbx", "other");
+        SortedSet<String> keys = p.keysWithPrefix("db.pool.");
+        assertThat(keys).containsExactly("db.pool.idle", "db.pool.size");
+        assertThat(p.keysWithPrefix("db"))
+                .containsExactly("db.pool.idle", "db.pool.size", "db.url", "dbx");
+        assertThat(p.keysWithPrefix("")).hasSize(4);
+        assertThat(p.keysWithPrefix("x")).isEmpty();
+        p.put("db.pool.max", "20");
+        p.remove("db.pool.size");
+        assertThat(keys).containsExactly("db.pool.idle", "db.pool.max");
+        assertThatThrownBy(() -> keys.remove("db.pool.max"))
+                .isInstanceOf(UnsupportedOperationException.class);
+        p.clear();
+        assertThat(keys).isEmpty();
+    }
+
+    @Test
+    void testSubProperties() throws IOException, URISyntaxException {
+        Properties p = Properties.loadProperties(getResource("/test.properties"));
+        p.putCommented("db.pool.size", "10", "# pool size");
+        p.put("db.pool.idle", "2");
+        Map<String, String> pool = p.subProperties("db.pool.");
+        assertThat(pool).containsExactly(entry("idle", "2"), entry("size", "10"));
+        pool.put("size", "20");
+        pool.put("max", "30");
+        pool.remove("idle");
+        assertThat(p.get("db.pool.size")).isEqualTo("20");
+        assertThat(p.getComment("db.pool.size")).containsExactly("# pool size");
+        assertThat(p.get("db.pool.max")).isEqualTo("30");
+        assertThat(p).doesNotContainKey("db.pool.idle");
+        pool.entrySet().iterator().next().setValue("40");
+        assertThat(p.get("db.pool.max")).isEqualTo("40");
+        Iterator<Map.Entry<String, String>> iter = pool.entrySet().iterator();
+        while (iter.hasNext()) {
+            iter.next();
+            iter.remove();
+        }
+        assertThat(pool).isEmpty();
+        StringWriter sw = new StringWriter();
+        p.store(sw);
+        assertThat(sw.toString()).isEqualTo(readAll(getResource("/test.properties")));
+    }
+
+    @Test
+    void testGetPropertyLayered() {
+        Properties global = new Properties();
+        global.setProperty("a", "global", "# global a");
+        global.setProperty("b", "global", "# global b");
+        Properties region = new Properties(global);
+        region.setProperty("b", "region", "# region b");
+        Properties p = new Properties(region);
+        assertThat(p.getProperty("a")).isEqualTo("global");
+        assertThat(p.getProperty("b")).isEqualTo("region");
+        assertThat(p.getPropertyComment("b")).containsExactly("# region b");
+        assertThat(p.getProperty("c", "dummy")).isEqualTo("dummy");
+        global.put("a", "changed");
+        region.remove("b");
+        assertThat(p.getProperty("a")).isEqualTo("changed");
+        assertThat(p.getProperty("b")).isEqualTo("global");
+        assertThat(p.getPropertyComment("b")).containsExactly("# global b");
+        global.put("c", "global");
+        p.put("a", "local");
+        assertThat(p.getProperty("a")).isEqualTo("local");
+        assertThat(p.getProperty("c", "dummy")).isEqualTo("global");
+        p.clear();
+        assertThat(p.getProperty("a")).isEqualTo("changed");
+    }
+
+    @Test
+    void testStringPropertyNamesChanges() {
+        Properties global = new Properties();
+        global.put("a", "1");
+        Properties region = new Properties(global);
+        region.put("b", "2");
+        Properties p = new Properties(region);
+        p.put("c", "3");
+        Set<String> names = p.stringPropertyNames();
+        assertThat(names).containsExactly("a", "b", "c");
+        assertThat(p.stringPropertyNames()).containsExactly("a", "b", "c");
+        global.put("d", "4");
+        assertThat(p.stringPropertyNames()).containsExactly("a", "d", "b", "c");
+        region.remove("b");
+        assertThat(p.stringPropertyNames()).containsExactly("a", "d", "c");
+        p.clear();
+        assertThat(p.stringPropertyNames()).containsExactly("a", "d");
+        // Earlier results don't change
+        assertThat(names).containsExactly("a", "b", "c");
+    }
+
+    @Test
+    void testStringPropertyNamesConcurrent() throws Exception {
+        Properties global = new Properties();
+        for (int i = 0; i < 100; i++) {
+            global.put("key" + i, "global");
+        }
+        Properties p = new Properties(global);
+        p.put("local", "value");
+        // Changing an unrelated object makes the readers check the chain again
+        Properties other = new Properties();
+        readConcurrently(
+                () -> assertThat(p.stringPropertyNames()).hasSize(101).contains("local"),
+                () -> other.put("x", "y"));
+    }
+
+    @Test
+    void testGetPropertyConcurrent() throws Exception {
+        Properties global = new Properties();
+        for (int i = 0; i < 100; i++) {
+            global.put("key" + i, "global" + i);
+        }
+        Properties p = new Properties(new Properties(global));
+        p.put("key0", "local");
+        Properties other = new Properties();
+        readConcurrently(
+                () -> {
+                    assertThat(p.getProperty("key0")).isEqualTo("local");
+                    for (int i = 1; i < 100; i++) {
+                        assertThat(p.getProperty("key" + i)).isEqualTo("global" + i);
+                        assertThat(p.getProperty("missing" + i)).isNull();
+                    }
+                },
+                () -> other.put("x", "y"));
+        // Keys that weren't found are found once they get added
+        global.put("missing1", "found");
+        assertThat(p.getProperty("missing1")).isEqualTo("found");
+    }
+
+    // Runs the reader on several threads at the same time while the writer runs on this one
+    private static void readConcurrently(Runnable reader, Runnable writer) throws Exception {
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                readers.add(
+                        executor.submit(
+                                () -> {
+                                    while (!done.get()) {
+                                        reader.run();
+                                    }
+                                }));
+            }
+            for (int n = 0; n < 1000; n++) {
+                writer.run();
+            }
+            done.set(true);
+            for (Future<?> r : readers) {
+                r.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     @Test
     void testGetRaw() throws IOException, URISyntaxException {
         Properties p = Properties.loadProperties(getResource("/test.properties"));
@@ -584,6 +1312,53 @@ public class TestProperties {
         assertThat(sw.toString()).isEqualTo(readAll(getResource("/test-removecomment.properties")));
     }
 
+    @Test
+    void testLookupAfterEdits() throws IOException, URISyntaxException {
+        Properties p = Properties.loadProperties(getResource("/test.properties"));
+        p.setComment("one", "# first", "# second");
+        p.remove("two");
+        p.put("five", "5");
+        p.setComment("key.4", "! moved down");
+        p.put("one", "replaced");
+        assertThat(p.getRaw("one")).isEqualTo("replaced");
+        assertThat(p.getComment("one")).containsExactly("# first", "# second");
+        assertThat(p.getRaw("two")).isNull();
+        assertThat(p.getComment("two")).isEmpty();
+        assertThat(p.getRaw("three")).isEqualTo("and escapes\\n\\t\\r\\f");
+        assertThat(p.getComment("three"))
+                .containsExactly("# another comment", "! and a comment", "! block");
+        assertThat(p.getRaw("\\ with\\ spaces")).isEqualTo("everywhere  ");
+        assertThat(p.getRaw("key.4")).isEqualTo("\\u1234\u1234");
+        assertThat(p.getComment("key.4")).containsExactly("! moved down");
+        assertThat(p.getRaw("five")).isEqualTo("5");
+        p.remove("one");
+        p.put("two", "back again");
+        assertThat(p.getRaw("one")).isNull();
+        assertThat(p.getRaw("two")).isEqualTo("back again");
+        assertThat(p.getRaw("three")).isEqualTo("and escapes\\n\\t\\r\\f");
+    }
+
+    @Test
+    void testLookupDuplicateKey() throws IOException {
+        Properties p = Properties.loadProperties(new StringReader("a=1\nb=2\na=3\n"));
+        assertThat(p.getRaw("a")).isEqualTo("1");
+        p.setComment("b", "# comment");
+        p.put("a", "4");
+        StringWriter sw = new StringWriter();
+        p.store(sw);
+        assertThat(sw.toString()).isEqualTo("a=4\n# comment\nb=2\na=3\n");
+        p.remove("a");
+        assertThat(p.getRaw("a")).isEqualTo("3");
+        p.remove("b");
+        assertThat(p.getRaw("a")).isEqualTo("3");
+        p.putRaw("a", "5");
+        p.remove("a");
+        assertThat(p.getRaw("a")).isEqualTo("5");
+        sw = new StringWriter();
+        p.store(sw);
+        assertThat(sw.toString()).contains("a=5").doesNotContain("a=3", "b=2");
+    }
+
     @Test
     public void testInteropLoad() throws IOException, URISyntaxException {
         java.util.Properties p = new java.util.Properties();
@@ -0,0 +1,79 @@
+package org.codejive.properties;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+
+public class TestPropertiesDiff {
+    @Test
+    void testDiff() throws IOException, URISyntaxException {
+        Properties deployed = Properties.loadProperties(getResource("/test.properties"));
+        Properties candidate = Properties.loadProperties(getResource("/test.properties"));
+        candidate.put("one", "changed");
+        candidate.remove("two");
+        candidate.setComment("three", "# a different comment");
+        candidate.putCommented("new", "value", "# a new comment");
+        candidate.put("another", "one");
+        // Only escaped differently
+        candidate.putRaw("key.4", "\u1234\\u1234");
+        PropertiesDiff diff = deployed.diff(candidate);
+        assertThat(diff.added()).containsExactly(entry("new", "value"), entry("another", "one"));
+        assertThat(diff.removed()).containsExactly(entry("two", "value containing spaces"));
+        assertThat(diff.changed()).containsOnlyKeys("one");
+        assertThat(diff.changed().get("one").oldValue()).isEqualTo("simple");
+        assertThat(diff.changed().get("one").newValue()).isEqualTo("changed");
+        assertThat(diff.comments())
+                .containsExactly(
+                        entry("three", Collections.singletonList("# a different comment")),
+                        entry("new", Collections.singletonList("# a new comment")));
+        assertThat(diff.isEmpty()).isFalse();
+        assertThat(candidate.diff(candidate).isEmpty()).isTrue();
+
+        diff.applyTo(deployed);
+        assertThat(deployed.diff(candidate).isEmpty()).isTrue();
+        assertThat(deployed.getRaw("key.4")).isEqualTo("\\u1234\u1234");
+        assertThat(deployed.getComment("new")).containsExactly("# a new comment");
+        assertThat(deployed.getComment("three")).containsExactly("# a different comment");
+    }
+
+    @Test
+    void testApplyKeepsFormatting() throws IOException, URISyntaxException {
+        Path f = getResource("/test.properties");
+        Properties deployed = Properties.loadProperties(f);
+        Properties candidate = Properties.loadProperties(f);
+        candidate.put("one", "changed");
+        deployed.diff(candidate).applyTo(deployed);
+        StringWriter sw = new StringWriter();
+        deployed.store(sw);
+        String expected = new String(Files.readAllBytes(f)).replace("one=simple", "one=changed");
+        assertThat(sw.toString()).isEqualTo(expected);
+    }
+
+    @Test
+    void testApplyDiverged() throws IOException, URISyntaxException {
+        Path f = getResource("/test.properties");
+        Properties base = Properties.loadProperties(f);
+        Properties candidate = Properties.loadProperties(f);
+        candidate.put("one", "changed");
+        candidate.setComment("three", "# a different comment");
+        candidate.putCommented("new", "value", "# a new comment");
+        // The target no longer has the property whose comment changed
+        Properties target = Properties.loadProperties(f);
+        target.remove("three");
+        base.diff(candidate).applyTo(target);
+        assertThat(target.get("one")).isEqualTo("changed");
+        assertThat(target.getComment("new")).containsExactly("# a new comment");
+        assertThat(target).doesNotContainKey("three");
+    }
+
+    private Path getResource(String name) throws URISyntaxException {
+        return Paths.get(getClass().getResource(name).toURI());
+    }
+}
@@ -0,0 +1,72 @@
+package org.codejive.properties;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestPropertiesLoader {
+    @Test
+    void testLoadDirectory(@TempDir Path tmp) throws IOException {
+        List<Path> files = write(tmp, 20);
+        Files.write(tmp.resolve("other.txt"), "x=1\n".getBytes());
+        Files.createDirectory(tmp.resolve("dir.properties"));
+        Map<Path, Properties> all = Properties.loadDirectory(tmp, "*.properties");
+        assertThat(all.keySet()).containsExactlyElementsOf(files);
+        for (int i = 0; i < files.size(); i++) {
+            assertThat(all.get(files.get(i)).get("tenant")).isEqualTo("t" + i);
+        }
+    }
+
+    @Test
+    void testLoadAll(@TempDir Path tmp) throws IOException {
+        List<Path> files = write(tmp, 20);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Map<Path, Properties> all = Properties.loadAll(files, executor);
+            assertThat(all.keySet()).containsExactlyElementsOf(files);
+            assertThat(executor.isShutdown()).isFalse();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testFailurePolicy(@TempDir Path tmp) throws IOException {
+        List<Path> files = write(tmp, 5);
+        Path missing = tmp.resolve("missing.properties");
+        files.add(2, missing);
+        assertThatThrownBy(() -> Properties.loadAll(files, null))
+                .isInstanceOf(NoSuchFileException.class);
+
+        PropertiesLoader.Result result =
+                PropertiesLoader.create()
+                        .withFailurePolicy(PropertiesLoader.FailurePolicy.COLLECT)
+                        .load(files);
+        assertThat(result.hasFailures()).isTrue();
+        assertThat(result.failures()).containsOnlyKeys(missing);
+        assertThat(result.failures().get(missing)).isInstanceOf(NoSuchFileException.class);
+        assertThat(result.properties()).hasSize(5).doesNotContainKey(missing);
+        assertThat(result.timings().keySet()).containsExactlyElementsOf(files);
+    }
+
+    private static List<Path> write(Path dir, int count) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Path f = dir.resolve(String.format("tenant%03d.properties", i));
+            Files.write(f, Arrays.asList("# tenant " + i, "tenant=t" + i, "limit=" + i * 10));
+            files.add(f);
+        }
+        return files;
+    }
+}
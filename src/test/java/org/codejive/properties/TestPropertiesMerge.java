@@ -0,0 +1,86 @@
+package org.codejive.properties;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import org.junit.jupiter.api.Test;
+
+public class TestPropertiesMerge {
+    @Test
+    void testMerge() throws IOException {
+        Properties base =
+                load(
+                        "# header\n\n"
+                                + "# first\n"
+                                + "a=1\n"
+                                + "b = 2\n"
+                                + "# third\n"
+                                + "c=3\n"
+                                + "d=4\n"
+                                + "e=5\n");
+        Properties ours =
+                load(
+                        "# header\n\n"
+                                + "# first, explained\n"
+                                + "a=1\n"
+                                + "b = 2\n"
+                                + "# third\n"
+                                + "c=ours\n"
+                                + "d=4\n"
+                                + "e=5\n"
+                                + "local=yes\n");
+        Properties theirs =
+                load(
+                        "# first\n"
+                                + "a:new\n"
+                                + "b = 2\n"
+                                + "# their third\n"
+                                + "c=theirs\n"
+                                + "x=added\n"
+                                + "e=5\n");
+        PropertiesMerge merge = Properties.merge(base, ours, theirs);
+        assertThat(merge.hasConflicts()).isTrue();
+        assertThat(merge.conflicts())
+                .containsExactly(entry("c", new PropertiesMerge.Conflict("3", "ours", "theirs")));
+        assertThat(store(merge.properties()))
+                .isEqualTo(
+                        "# header\n\n"
+                                + "# first, explained\n"
+                                + "a:new\n"
+                                + "b = 2\n"
+                                + "# their third\n"
+                                + "c=ours\n"
+                                + "x=added\n"
+                                + "e=5\n"
+                                + "local=yes\n");
+    }
+
+    @Test
+    void testMergeRemoved() throws IOException {
+        Properties base = load("a=1\nb=2\nc=3\n");
+        Properties ours = load("a=changed\nc=3\n");
+        Properties theirs = load("b=changed\nc=3\n");
+        PropertiesMerge merge = Properties.merge(base, ours, theirs);
+        assertThat(merge.conflicts())
+                .containsExactly(
+                        entry("a", new PropertiesMerge.Conflict("1", "changed", null)),
+                        entry("b", new PropertiesMerge.Conflict("2", null, "changed")));
+        assertThat(store(merge.properties())).isEqualTo("a=changed\nc=3\n");
+
+        merge = Properties.merge(base, load("a=1\nb=2\nc=3\n"), load("x=0\nc=3\n"));
+        assertThat(merge.hasConflicts()).isFalse();
+        assertThat(store(merge.properties())).isEqualTo("x=0\nc=3\n");
+    }
+
+    private static Properties load(String text) throws IOException {
+        return Properties.loadProperties(new StringReader(text));
+    }
+
+    private static String store(Properties props) throws IOException {
+        StringWriter sw = new StringWriter();
+        props.store(sw);
+        return sw.toString();
+    }
+}
@@ -2,8 +2,13 @@ package org.codejive.properties;
 
 import static org.assertj.core.api.Assertions.*;
 
+import java.io.FilterReader;
 import java.io.IOException;
+import java.io.Reader;
 import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -95,6 +100,106 @@ public class TestPropertiesParser {
                         new Token(Type.COMMENT, "# final comment"));
     }
 
+    @Test
+    void testParse() throws IOException {
+        StringBuilder raw = new StringBuilder();
+        StringBuilder seen = new StringBuilder();
+        PropertiesParser.parse(
+                new StringReader(props),
+                new PropertiesHandler() {
+                    @Override
+                    public void onKey(String key, String rawKey) {
+                        raw.append(rawKey);
+                        seen.append("[").append(key).append("]");
+                    }
+
+                    @Override
+                    public void onSeparator(String separator) {
+                        raw.append(separator);
+                    }
+
+                    @Override
+                    public void onValue(String value, String rawValue) {
+                        raw.append(rawValue);
+                        seen.append(value.length()).append(";");
+                    }
+
+                    @Override
+                    public void onComment(String comment) {
+                        raw.append(comment);
+                        seen.append("#");
+                    }
+
+                    @Override
+                    public void onWhitespace(String whitespace) {
+                        raw.append(whitespace);
+                    }
+                });
+        assertThat(raw.toString()).isEqualTo(props);
+        assertThat(seen.toString())
+                .isEqualTo(
+                        "###[one]6;[two]23;###[three]15;[ with spaces]12;[altsep]5;"
+                                + "[multiline]14;[key.4]1;[line-with-missing-delim]0;"
+                                + "[multidelim]7;#");
+    }
+
+    @Test
+    void testTokensIOError() {
+        Reader failing =
+                new Reader() {
+                    @Override
+                    public int read(char[] cbuf, int off, int len) throws IOException {
+                        throw new IOException("broken");
+                    }
+
+                    @Override
+                    public void close() {}
+                };
+        assertThatThrownBy(() -> PropertiesParser.tokens(failing).count())
+                .isInstanceOf(UncheckedIOException.class)
+                .hasCauseInstanceOf(IOException.class);
+        assertThatThrownBy(() -> new Properties().load(failing))
+                .isInstanceOf(IOException.class)
+                .hasMessage("broken");
+    }
+
+    @Test
+    void testLineStart() throws IOException {
+        PropertiesParser.ByteSource source = source("a=1\\\n b\r\n# c\\\nd=\\\\\r\ne=\\\r\n f");
+        assertThat(PropertiesParser.lineStart(source, 0)).isEqualTo(9);
+        assertThat(PropertiesParser.lineStart(source, 8)).isEqualTo(9);
+        // Comment lines ending in a backslash are skipped as well, to be on the safe side
+        assertThat(PropertiesParser.lineStart(source, 9)).isEqualTo(20);
+        assertThat(PropertiesParser.lineStart(source, 19)).isEqualTo(20);
+        // Not in between a continued line's \r and \n
+        assertThat(PropertiesParser.lineStart(source, 24)).isEqualTo(27);
+    }
+
+    @Test
+    void testParallelTokens() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; sb.length() < 2_000_000; i++) {
+            sb.append(props).append(i % 3 == 0 ? "\r\n" : "\n");
+            sb.append("cont.").append(i).append(" = a\\\r\n  b\\\n  c\\\\\n");
+            sb.append("# not continued \\\nkey\\ ").append(i).append(" : \u00e9\r");
+        }
+        PropertiesParser.ByteSource source = source(sb.toString());
+        List<Token> expected = PropertiesParser.tokens(source, false).collect(Collectors.toList());
+        for (int parallelism : new int[] {2, 3, 8}) {
+            List<Token> tokens = PropertiesParser.tokens(source, false, parallelism);
+            assertThat(tokens).isEqualTo(expected);
+            assertThat(tokens.stream().map(Token::getRaw).collect(Collectors.joining()))
+                    .isEqualTo(sb.toString());
+        }
+    }
+
+    private static PropertiesParser.ByteSource source(String text) throws IOException {
+        return new PropertiesParser.ByteSource(
+                ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)),
+                StandardCharsets.UTF_8,
+                null);
+    }
+
     @Test
     void testStringify() throws IOException {
         StringReader rdr = new StringReader(props);
@@ -102,4 +207,86 @@ public class TestPropertiesParser {
         String props2 = tokens.map(Token::getRaw).collect(Collectors.joining());
         assertThat(props2).isEqualTo(props);
     }
+
+    @Test
+    void testEdgeCases() throws IOException {
+        String edge =
+                ""
+                        + "=empty key\r"
+                        + "\\=key\\:with\\ escapes\\\\ = \\\\value\\\\\r"
+                        + "# comment \\\n"
+                        + "continued\n"
+                        + "\t  \f\r\n"
+                        + "\r"
+                        + "ends:with:\\u0041";
+        StringReader rdr = new StringReader(edge);
+        List<String> tokens =
+                PropertiesParser.tokens(rdr).map(Token::toString).collect(Collectors.toList());
+        assertThat(tokens)
+                .containsExactly(
+                        "Token(KEY, '')",
+                        "Token(SEPARATOR, '=')",
+                        "Token(VALUE, 'empty key')",
+                        "Token(WHITESPACE, '\r')",
+                        "Token(KEY, '\\=key\\:with\\ escapes\\\\', '=key:with escapes\\')",
+                        "Token(SEPARATOR, ' = ')",
+                        "Token(VALUE, '\\\\value\\\\', '\\value\\')",
+                        "Token(WHITESPACE, '\r')",
+                        "Token(COMMENT, '# comment \\\ncontinued', '# comment continued')",
+                        "Token(WHITESPACE, '\n')",
+                        "Token(WHITESPACE, '\t  \f\r\n')",
+                        "Token(WHITESPACE, '\r')",
+                        "Token(KEY, 'ends')",
+                        "Token(SEPARATOR, ':')",
+                        "Token(VALUE, 'with:\\u0041', 'with:A')");
+    }
+
+    @Test
+    void testSmallReads() throws IOException {
+        // A reader that returns a single character per read
+        Reader rdr =
+                new FilterReader(new StringReader(props)) {
+                    @Override
+                    public int read(char[] cbuf, int off, int len) throws IOException {
+                        return super.read(cbuf, off, Math.min(len, 1));
+                    }
+                };
+        List<String> tokens =
+                PropertiesParser.tokens(rdr).map(Token::toString).collect(Collectors.toList());
+        List<String> expected =
+                PropertiesParser.tokens(new StringReader(props))
+                        .map(Token::toString)
+                        .collect(Collectors.toList());
+        assertThat(tokens).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void testLongTokens() throws IOException {
+        StringBuilder key = new StringBuilder();
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            key.append("k").append(i % 10);
+            value.append("v\\t").append(i % 10);
+        }
+        String text = "# " + value + "\n" + key + "=" + value + "\n";
+        List<Token> tokens =
+                PropertiesParser.tokens(new StringReader(text)).collect(Collectors.toList());
+        assertThat(tokens).hasSize(6);
+        assertThat(tokens.get(0).getRaw()).isEqualTo("# " + value);
+        assertThat(tokens.get(2).getRaw()).isEqualTo(key.toString());
+        assertThat(tokens.get(4).getRaw()).isEqualTo(value.toString());
+        assertThat(tokens.get(4).getText()).isEqualTo(value.toString().replace("\\t", "\t"));
+    }
+
+    @Test
+    void testTrailingBackslash() throws IOException {
+        List<Token> tokens =
+                PropertiesParser.tokens(new StringReader("key=value\\"))
+                        .collect(Collectors.toList());
+        assertThat(tokens)
+                .containsExactly(
+                        new Token(Type.KEY, "key"),
+                        new Token(Type.SEPARATOR, "="),
+                        new Token(Type.VALUE, "value\\", "value"));
+    }
 }
@@ -0,0 +1,96 @@
+package org.codejive.properties;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestPropertiesTransformer {
+    @Test
+    void testCopy(@TempDir Path tmp) throws IOException, URISyntaxException {
+        for (String name : new String[] {"/test.properties", "/testcrlf.properties"}) {
+            Path f = getResource(name);
+            Path out = tmp.resolve("out.properties");
+            PropertiesTransformer.create().transform(f, out);
+            assertThat(readAll(out)).isEqualTo(readAll(f));
+        }
+    }
+
+    @Test
+    void testSameFile(@TempDir Path tmp) throws IOException {
+        Path f = tmp.resolve("same.properties");
+        Files.write(f, "a=1\n".getBytes());
+        Path other = tmp.resolve("sub").resolve("..").resolve("same.properties");
+        Files.createDirectory(tmp.resolve("sub"));
+        assertThatThrownBy(() -> PropertiesTransformer.create().transform(f, other))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(readAll(f)).isEqualTo("a=1\n");
+    }
+
+    @Test
+    void testTransform() throws IOException {
+        String in =
+                "# header\n"
+                        + "\n"
+                        + "# dropped\n"
+                        + "tmp.a=1\n"
+                        + "  # the password\n"
+                        + "  db.password : secret\n"
+                        + "db.url=jdbc\n"
+                        + "old.name = kept\\\n"
+                        + "    as is\n"
+                        + "# trailing comment";
+        StringWriter out = new StringWriter();
+        PropertiesTransformer.create()
+                .filter((key, value) -> !key.startsWith("tmp."))
+                .mapValues((key, value) -> key.endsWith(".password") ? "****" : value)
+                .renameKeys(key -> key.equals("old.name") ? "new name" : key)
+                .comment(
+                        (key, value) ->
+                                key.equals("db.url")
+                                        ? Arrays.asList("The URL", "! really")
+                                        : key.equals("db.password")
+                                                ? Collections.emptyList()
+                                                : null)
+                .transform(new StringReader(in), out);
+        assertThat(out.toString())
+                .isEqualTo(
+                        "# header\n"
+                                + "\n"
+                                + "  db.password : ****\n"
+                                + "# The URL\n"
+                                + "! really\n"
+                                + "db.url=jdbc\n"
+                                + "new\\ name = kept\\\n"
+                                + "    as is\n"
+                                + "# trailing comment");
+    }
+
+    @Test
+    void testTransformNull() throws IOException {
+        String in = "# a\na=1\n# b\nb=2\n# c\nc=3\n";
+        StringWriter out = new StringWriter();
+        PropertiesTransformer.create()
+                .mapValues((key, value) -> key.equals("a") ? null : value)
+                .renameKeys(key -> key.equals("b") ? null : key)
+                .transform(new StringReader(in), out);
+        assertThat(out.toString()).isEqualTo("# c\nc=3\n");
+    }
+
+    private Path getResource(String name) throws URISyntaxException {
+        return Paths.get(getClass().getResource(name).toURI());
+    }
+
+    private String readAll(Path f) throws IOException {
+        return new String(Files.readAllBytes(f));
+    }
+}
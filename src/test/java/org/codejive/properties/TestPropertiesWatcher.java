@@ -0,0 +1,40 @@
+package org.codejive.properties;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestPropertiesWatcher {
+    @Test
+    void testWatch(@TempDir Path tmp) throws IOException, InterruptedException {
+        Path f = tmp.resolve("watched.properties");
+        Files.write(f, "a=1\nb=2\n".getBytes(StandardCharsets.UTF_8));
+        Properties p = Properties.loadProperties(f);
+        BlockingQueue<PropertiesChangeEvent> events = new LinkedBlockingQueue<>();
+        p.addChangeListener(events::add);
+        try (PropertiesWatcher watcher = PropertiesWatcher.watch(p, f)) {
+            Files.write(f, "a=1\nb=changed\n".getBytes(StandardCharsets.UTF_8));
+            // Writing the file might be seen as more than one change,
+            // so we wait for the one that contains the new value
+            PropertiesChangeEvent event;
+            do {
+                event = events.poll(30, TimeUnit.SECONDS);
+                assertThat(event).isNotNull();
+            } while (!event.changes().containsKey("b")
+                    || event.changes().get("b").newValue() == null);
+            assertThat(event.changes().get("b").newValue()).isEqualTo("changed");
+            assertThat(watcher.lastFailure()).isNull();
+        }
+        synchronized (p) {
+            assertThat(p).containsExactly(entry("a", "1"), entry("b", "changed"));
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package org.codejive.properties;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import org.codejive.properties.PropertiesParser.Token;
+import org.codejive.properties.PropertiesParser.Type;
+import org.junit.jupiter.api.Test;
+
+public class TestTokenList {
+    @Test
+    void testRandomEdits() {
+        Random rnd = new Random(42);
+        TokenList tokens = new TokenList();
+        List<Token> expected = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            int op = rnd.nextInt(10);
+            if (op < 6 || expected.isEmpty()) {
+                int idx = rnd.nextInt(expected.size() + 1);
+                Token t = new Token(rnd.nextBoolean() ? Type.KEY : Type.VALUE, "t" + i);
+                tokens.add(idx, t);
+                expected.add(idx, t);
+            } else if (op < 9) {
+                int idx = rnd.nextInt(expected.size());
+                assertThat(tokens.remove(idx)).isSameAs(expected.remove(idx));
+            } else {
+                int idx = rnd.nextInt(expected.size());
+                Token t = new Token(Type.KEY, "s" + i);
+                assertThat(tokens.set(idx, t)).isSameAs(expected.set(idx, t));
+            }
+        }
+        assertThat(tokens).containsExactlyElementsOf(expected);
+        for (int i = 0; i < expected.size(); i++) {
+            Token t = expected.get(i);
+            if (t.getType() == Type.KEY) {
+                assertThat(tokens.positionOf(t)).isEqualTo(i);
+            }
+        }
+        assertThat(tokens.positionOf(new Token(Type.KEY, "t0"))).isEqualTo(-1);
+    }
+
+    @Test
+    void testAppendAndClear() {
+        TokenList tokens = new TokenList();
+        Token key = new Token(Type.KEY, "key");
+        for (int i = 0; i < 1000; i++) {
+            tokens.add(new Token(Type.WHITESPACE, "\n"));
+        }
+        tokens.add(key);
+        assertThat(tokens).hasSize(1001);
+        assertThat(tokens.positionOf(key)).isEqualTo(1000);
+        tokens.add(0, new Token(Type.COMMENT, "# comment"));
+        assertThat(tokens.positionOf(key)).isEqualTo(1001);
+        tokens.clear();
+        assertThat(tokens).isEmpty();
+        assertThat(tokens.positionOf(key)).isEqualTo(-1);
+    }
+
+    @Test
+    void testRemoveAll() {
+        Random rnd = new Random(42);
+        TokenList tokens = new TokenList();
+        List<Token> expected = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            Token t = new Token(i % 3 == 0 ? Type.KEY : Type.VALUE, "t" + i);
+            tokens.add(t);
+            expected.add(t);
+        }
+        BitSet drop = new BitSet();
+        // A whole chunk, some scattered tokens and the very last one
+        drop.set(1000, 1300);
+        for (int i = 0; i < 200; i++) {
+            drop.set(rnd.nextInt(5000));
+        }
+        drop.set(4999);
+        List<Token> removed = new ArrayList<>();
+        for (int i = drop.length() - 1; i >= 0; i--) {
+            if (drop.get(i)) {
+                removed.add(expected.remove(i));
+            }
+        }
+        tokens.removeAll(drop);
+        assertThat(tokens).containsExactlyElementsOf(expected);
+        for (int i = 0; i < expected.size(); i++) {
+            Token t = expected.get(i);
+            if (t.getType() == Type.KEY) {
+                assertThat(tokens.positionOf(t)).isEqualTo(i);
+            }
+        }
+        for (Token t : removed) {
+            assertThat(tokens.positionOf(t)).isEqualTo(-1);
+        }
+        tokens.add(0, new Token(Type.COMMENT, "# comment"));
+        assertThat(tokens.get(1)).isSameAs(expected.get(0));
+    }
+
+    @Test
+    void testJournal() {
+        Random rnd = new Random(42);
+        TokenList tokens = new TokenList();
+        for (int i = 0; i < 2000; i++) {
+            tokens.add(new Token(i % 3 == 0 ? Type.KEY : Type.VALUE, "t" + i));
+        }
+        List<Token> original = new ArrayList<>(tokens);
+        List<Runnable> journal = new ArrayList<>();
+        tokens.journal(journal);
+        for (int i = 0; i < 1000; i++) {
+            int op = rnd.nextInt(4);
+            if (op == 0) {
+                tokens.add(rnd.nextInt(tokens.size() + 1), new Token(Type.KEY, "n" + i));
+            } else if (op == 1) {
+                tokens.remove(rnd.nextInt(tokens.size()));
+            } else if (op == 2) {
+                tokens.set(rnd.nextInt(tokens.size()), new Token(Type.KEY, "s" + i));
+            } else {
+                BitSet drop = new BitSet();
+                drop.set(rnd.nextInt(tokens.size()));
+                drop.set(rnd.nextInt(tokens.size()));
+                tokens.removeAll(drop);
+            }
+        }
+        tokens.clear();
+        tokens.add(new Token(Type.KEY, "last"));
+        tokens.journal(null);
+        for (int i = journal.size() - 1; i >= 0; i--) {
+            journal.get(i).run();
+        }
+        assertThat(tokens).containsExactlyElementsOf(original);
+        for (int i = 0; i < original.size(); i++) {
+            if (original.get(i).getType() == Type.KEY) {
+                assertThat(tokens.positionOf(original.get(i))).isEqualTo(i);
+            }
+        }
+    }
+}